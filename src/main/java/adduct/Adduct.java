@@ -7,6 +7,9 @@ import java.util.regex.Pattern;
 
 public class Adduct {
 
+    private static final Pattern CHARGE_PATTERN = Pattern.compile("([0-9]*)([+-])\\]?$");
+    private static final Pattern MULTIMER_PATTERN = Pattern.compile("\\[([0-9]*)M");
+
     /**
      * Calculates the monoisotopic mass of a molecule from the given m/z (mass-to-charge ratio) and adduct details.
      * <p>
@@ -29,7 +32,6 @@ public class Adduct {
         // M = mz + shift
         if(charge == 1 && multimer == 1) {
             monoisotopicMass = mz + shift;
-            System.out.println("monoisotopicMass = " + mz + " + " + shift + " = " + monoisotopicMass);
         } else if(charge > 1 && multimer == 1) {
             monoisotopicMass = (mz + shift)*charge;
         } else if(charge == 1 && multimer > 1){
@@ -60,7 +62,6 @@ public class Adduct {
             mz = monoisotopicMass - shift;
         } else if (charge > 1 && multimer == 1) {
             mz = (monoisotopicMass / charge) - shift;
-            System.out.println(" - mz = (" + monoisotopicMass + "/" + charge + ") - " + shift + " = " + mz);
         } else if (charge == 1 && multimer > 1) {
             mz = (monoisotopicMass * multimer) - shift;
         } else {
@@ -97,10 +98,10 @@ public class Adduct {
      * @param adduct The adduct string, e.g., "[M+H]+", "[M-H]−", or "[M+2H]2+".
      * @return The detected charge as an integer value. Defaults to 1 if no explicit charge is found.
      */
-    private static int getAdductCharge(String adduct) {
+    public static int getAdductCharge(String adduct) {
 
         // Match the last digit(s) followed by + or − before the closing bracket
-        Matcher m = Pattern.compile("([0-9]*)([+-])\\]?$").matcher(adduct);
+        Matcher m = CHARGE_PATTERN.matcher(adduct);
         if (m.find()) {
             String num = m.group(1);  // May be empty
             return num.isEmpty() ? 1 : Integer.parseInt(num);
@@ -121,8 +122,7 @@ public class Adduct {
      */
     private static int getAdductMultimer(String key) {
         // Match optional number before M (e.g. [2M+H]+ → 2)
-        Pattern multimerPattern = Pattern.compile("\\[([0-9]*)M");
-        Matcher matcher = multimerPattern.matcher(key);
+        Matcher matcher = MULTIMER_PATTERN.matcher(key);
         if (matcher.find()) {
             String multimerStr = matcher.group(1);
             return multimerStr.isEmpty() ? 1 : Integer.parseInt(multimerStr);
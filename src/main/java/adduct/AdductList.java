@@ -1,7 +1,10 @@
 package adduct;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 public class AdductList {
@@ -9,6 +12,15 @@ public class AdductList {
     public static final Map<String, Double> MAPMZPOSITIVEADDUCTS;
     public static final Map<String, Double> MAPMZNEGATIVEADDUCTS;
 
+    /**
+     * Id used when no adduct is known.
+     */
+    public static final byte NO_ADDUCT = -1;
+
+    // every adduct of the registry (positive ones first) by id, so an adduct can be stored as a small number
+    private static final String[] ADDUCT_NAMES;
+    private static final Map<String, Byte> ADDUCT_IDS;
+
     static {
         Map<String, Double> mapMZPositiveAdductsTMP = new LinkedHashMap<>();
         mapMZPositiveAdductsTMP.put("[M+H]+", -1.007276d);
@@ -30,6 +42,37 @@ public class AdductList {
         mapMZNegativeAdductsTMP.put("[2M-H]−", 1.007276d);
         mapMZNegativeAdductsTMP.put("[M-2H]2−", 1.007276d);
         MAPMZNEGATIVEADDUCTS = Collections.unmodifiableMap(mapMZNegativeAdductsTMP);
+
+        List<String> adductNamesTMP = new ArrayList<>(MAPMZPOSITIVEADDUCTS.keySet());
+        adductNamesTMP.addAll(MAPMZNEGATIVEADDUCTS.keySet());
+        ADDUCT_NAMES = adductNamesTMP.toArray(new String[0]);
+        Map<String, Byte> adductIdsTMP = new HashMap<>();
+        for (int i = 0; i < ADDUCT_NAMES.length; i++) {
+            adductIdsTMP.put(ADDUCT_NAMES[i], (byte) i);
+        }
+        ADDUCT_IDS = Collections.unmodifiableMap(adductIdsTMP);
+    }
+
+    /**
+     * @param adduct The adduct name, e.g. "[M+H]+", or {@code null}.
+     * @return The id of the adduct in the registry, or {@link #NO_ADDUCT} if {@code adduct} is {@code null}.
+     * @throws IllegalArgumentException if the adduct is not in the registry.
+     */
+    public static byte getAdductId(String adduct) {
+        if (adduct == null) return NO_ADDUCT;
+        Byte id = ADDUCT_IDS.get(adduct);
+        if (id == null) {
+            throw new IllegalArgumentException("Unknown adduct " + adduct);
+        }
+        return id;
+    }
+
+    /**
+     * @param adductId The id returned by {@link #getAdductId(String)}.
+     * @return The adduct name, or {@code null} for {@link #NO_ADDUCT}.
+     */
+    public static String getAdductName(byte adductId) {
+        return adductId == NO_ADDUCT ? null : ADDUCT_NAMES[adductId];
     }
 
 }
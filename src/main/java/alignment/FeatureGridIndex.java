@@ -0,0 +1,100 @@
+package alignment;
+
+import pipeline.Feature;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Grid index over the (m/z, RT) plane of a list of features. The m/z axis is split in buckets of
+ * {@code ppmTolerance} (on a logarithmic scale, so every bucket has the same width in ppm) and the RT axis in
+ * buckets of {@code rtBucketWidth}. A lookup only visits the buckets that can hold a feature within both
+ * tolerances: the m/z bucket of the query and its 2 neighbours, and the RT buckets within
+ * {@code rtTolerance} of the query. Building the index is linear and each lookup takes constant time.
+ * <p>
+ * RT buckets narrower than the RT tolerance visit more buckets per lookup but fewer features per bucket, which
+ * pays off when the features are dense in RT.
+ * </p>
+ */
+public class FeatureGridIndex {
+
+    private final List<Feature> features;
+    private final double ppmTolerance;
+    private final double rtTolerance;
+    private final double rtBucketWidth;
+    private final int rtBucketSpan;
+    private final double logMzBucketWidth;
+    private final Map<Long, List<Integer>> buckets;
+
+    public FeatureGridIndex(List<Feature> features, double ppmTolerance, double rtTolerance) {
+        this(features, ppmTolerance, rtTolerance, rtTolerance);
+    }
+
+    /**
+     * @param ppmTolerance  The m/z tolerance, in ppm, of a match. It is also the width of the m/z buckets.
+     * @param rtTolerance   The RT tolerance, in minutes, of a match.
+     * @param rtBucketWidth The width, in minutes, of the RT buckets.
+     */
+    public FeatureGridIndex(List<Feature> features, double ppmTolerance, double rtTolerance, double rtBucketWidth) {
+        this.features = features;
+        this.ppmTolerance = ppmTolerance;
+        this.rtTolerance = rtTolerance;
+        this.rtBucketWidth = rtBucketWidth;
+        this.rtBucketSpan = (int) Math.ceil(rtTolerance / rtBucketWidth);
+        this.logMzBucketWidth = Math.log1p(ppmTolerance / 1_000_000.0);
+        this.buckets = new HashMap<>(features.size() * 2);
+        for (int i = 0; i < features.size(); i++) {
+            Feature feature = features.get(i);
+            buckets.computeIfAbsent(key(mzBucket(feature.getMz()), rtBucket(feature.getRtMin())), k -> new ArrayList<>(1)).add(i);
+        }
+    }
+
+    /**
+     * Finds the indexed feature closest to the given m/z and RT.
+     *
+     * @return The closest feature within both tolerances, or {@code null} if there is none.
+     */
+    public Feature findClosest(double mz, double rtMin) {
+        long mzBucket = mzBucket(mz);
+        long rtBucket = rtBucket(rtMin);
+        Feature closest = null;
+        double closestDistance = Double.MAX_VALUE;
+        for (long m = mzBucket - 1; m <= mzBucket + 1; m++) {
+            for (long r = rtBucket - rtBucketSpan; r <= rtBucket + rtBucketSpan; r++) {
+                List<Integer> bucket = buckets.get(key(m, r));
+                if (bucket == null) continue;
+                for (int index : bucket) {
+                    Feature candidate = features.get(index);
+                    double ppm = Math.abs(candidate.getMz() - mz) * 1_000_000.0 / mz;
+                    double rtDelta = Math.abs(candidate.getRtMin() - rtMin);
+                    if (ppm > ppmTolerance || rtDelta > rtTolerance) continue;
+                    // both errors relative to their tolerance, so neither axis dominates
+                    double distance = ppm / ppmTolerance + rtDelta / rtTolerance;
+                    if (distance < closestDistance) {
+                        closestDistance = distance;
+                        closest = candidate;
+                    }
+                }
+            }
+        }
+        return closest;
+    }
+
+    public int size() {
+        return features.size();
+    }
+
+    private long mzBucket(double mz) {
+        return (long) Math.floor(Math.log(mz) / logMzBucketWidth);
+    }
+
+    private long rtBucket(double rtMin) {
+        return (long) Math.floor(rtMin / rtBucketWidth);
+    }
+
+    private static long key(long mzBucket, long rtBucket) {
+        return mzBucket * 1_000_003L + rtBucket;
+    }
+}
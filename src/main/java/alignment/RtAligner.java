@@ -0,0 +1,168 @@
+package alignment;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pipeline.Feature;
+import pipeline.FeatureReader;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fits a per-sample RT correction that maps the RTs of every sample onto the RTs of a reference sample, so
+ * that the elution order rules see comparable RTs across batches.
+ * <p>
+ * The sample with the most landmark features is used as reference and indexed in a {@link FeatureGridIndex}.
+ * The landmarks of every other sample are matched against it by (m/z, RT), the matches are binned by RT and
+ * the median RT shift of each bin becomes a knot of a piecewise-linear {@link RtCorrection}. The medians make
+ * the fit robust to wrong matches. Matching and fitting are linear in the number of landmarks, and the
+ * samples are fitted in parallel.
+ * </p>
+ */
+public class RtAligner {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RtAligner.class);
+
+    private final double ppmTolerance;
+    private final double rtTolerance;
+    private final double rtBucketWidth;
+    private final double binWidth;
+    private final int minMatchesPerBin;
+    private final int landmarksPerSample;
+
+    public RtAligner() {
+        this(10d, 1.0d, 0.5d, 1.0d, 3, 2000);
+    }
+
+    /**
+     * Aligner whose reference index has RT buckets as wide as the RT tolerance.
+     */
+    public RtAligner(double ppmTolerance, double rtTolerance, double binWidth, int minMatchesPerBin, int landmarksPerSample) {
+        this(ppmTolerance, rtTolerance, rtTolerance, binWidth, minMatchesPerBin, landmarksPerSample);
+    }
+
+    /**
+     * @param ppmTolerance       The m/z tolerance, in ppm, to match a feature with the reference.
+     * @param rtTolerance        The RT tolerance, in minutes, to match a feature with the reference. It must be
+     *                           larger than the expected drift between batches.
+     * @param rtBucketWidth      The width, in minutes, of the RT buckets of the reference index. It only
+     *                           changes the speed of the matching, not the matches.
+     * @param binWidth           The width, in minutes, of the RT bins that become knots of the correction.
+     * @param minMatchesPerBin   The minimum number of matches in a bin to create a knot.
+     * @param landmarksPerSample The number of most intense features of each sample used for the fit.
+     */
+    public RtAligner(double ppmTolerance, double rtTolerance, double rtBucketWidth, double binWidth,
+                     int minMatchesPerBin, int landmarksPerSample) {
+        this.ppmTolerance = ppmTolerance;
+        this.rtTolerance = rtTolerance;
+        this.rtBucketWidth = rtBucketWidth;
+        this.binWidth = binWidth;
+        this.minMatchesPerBin = minMatchesPerBin;
+        this.landmarksPerSample = landmarksPerSample;
+    }
+
+    /**
+     * Reads the landmarks of every sample file, in parallel, and fits their corrections. Only the landmarks of
+     * each sample are kept in memory.
+     * <p>
+     * The corrections need the landmarks of every sample before the first sample can be corrected, so a batch
+     * that is aligned reads every file twice: once here, and once when the sample is annotated. A file that
+     * cannot be read is left out of the fit and keeps its RTs; it is reported when the sample is annotated.
+     * </p>
+     *
+     * @return The correction of every sample that could be read, by sample name.
+     */
+    public Map<String, RtCorrection> fitFiles(List<Path> sampleFiles) {
+        Map<String, List<Feature>> landmarks = new ConcurrentHashMap<>();
+        sampleFiles.parallelStream().forEach(file -> {
+            try {
+                landmarks.put(FeatureReader.sampleName(file), selectLandmarks(FeatureReader.read(file)));
+            } catch (IOException e) {
+                LOG.warn("Sample {} left out of the RT alignment: {}", FeatureReader.sampleName(file), e.getMessage());
+            }
+        });
+        return fit(landmarks);
+    }
+
+    /**
+     * Fits the correction of every sample.
+     *
+     * @param featuresBySample The features of every sample, by sample name. Only the most intense
+     *                         {@code landmarksPerSample} features of each sample are used.
+     * @return The correction of every sample, by sample name. The reference sample gets the identity.
+     */
+    public Map<String, RtCorrection> fit(Map<String, List<Feature>> featuresBySample) {
+        Map<String, List<Feature>> landmarks = new ConcurrentHashMap<>();
+        featuresBySample.entrySet().parallelStream()
+                .forEach(entry -> landmarks.put(entry.getKey(), selectLandmarks(entry.getValue())));
+
+        Map<String, RtCorrection> corrections = new ConcurrentHashMap<>();
+        String reference = landmarks.entrySet().stream()
+                .max(Comparator.comparingInt((Map.Entry<String, List<Feature>> entry) -> entry.getValue().size())
+                        .thenComparing(Map.Entry::getKey, Comparator.reverseOrder()))
+                .map(Map.Entry::getKey)
+                .orElse(null);
+        if (reference == null) return corrections;
+
+        FeatureGridIndex referenceIndex = new FeatureGridIndex(landmarks.get(reference), ppmTolerance, rtTolerance, rtBucketWidth);
+        landmarks.entrySet().parallelStream().forEach(entry -> corrections.put(entry.getKey(),
+                entry.getKey().equals(reference) ? RtCorrection.IDENTITY : fitSample(entry.getValue(), referenceIndex)));
+        return corrections;
+    }
+
+    /**
+     * Fits the correction of one sample against the reference index.
+     */
+    public RtCorrection fitSample(List<Feature> landmarks, FeatureGridIndex reference) {
+        List<double[]> matches = new ArrayList<>();
+        for (Feature feature : landmarks) {
+            Feature match = reference.findClosest(feature.getMz(), feature.getRtMin());
+            if (match != null) {
+                matches.add(new double[]{feature.getRtMin(), match.getRtMin() - feature.getRtMin()});
+            }
+        }
+        matches.sort(Comparator.comparingDouble(match -> match[0]));
+
+        List<Double> knotRts = new ArrayList<>();
+        List<Double> knotShifts = new ArrayList<>();
+        int start = 0;
+        for (int i = 1; i <= matches.size(); i++) {
+            if (i == matches.size() || bin(matches.get(i)[0]) != bin(matches.get(start)[0])) {
+                if (i - start >= minMatchesPerBin) {
+                    knotRts.add(median(matches.subList(start, i), 0));
+                    knotShifts.add(median(matches.subList(start, i), 1));
+                }
+                start = i;
+            }
+        }
+        return new RtCorrection(knotRts.stream().mapToDouble(Double::doubleValue).toArray(),
+                knotShifts.stream().mapToDouble(Double::doubleValue).toArray());
+    }
+
+    private List<Feature> selectLandmarks(List<Feature> features) {
+        if (features.size() <= landmarksPerSample) return features;
+        List<Feature> sorted = new ArrayList<>(features);
+        sorted.sort(Comparator.comparingDouble(Feature::getIntensity).reversed());
+        return new ArrayList<>(sorted.subList(0, landmarksPerSample));
+    }
+
+    private long bin(double rtMin) {
+        return (long) Math.floor(rtMin / binWidth);
+    }
+
+    private static double median(List<double[]> values, int column) {
+        double[] sorted = new double[values.size()];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = values.get(i)[column];
+        }
+        Arrays.sort(sorted);
+        int middle = sorted.length / 2;
+        return sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2;
+    }
+}
@@ -0,0 +1,68 @@
+package alignment;
+
+import pipeline.Feature;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Piecewise-linear RT correction of one sample. The correction is defined by knots (observed RT, shift to
+ * the reference RT); between knots the shift is interpolated linearly and outside them the shift of the
+ * closest knot is used.
+ */
+public class RtCorrection {
+
+    public static final RtCorrection IDENTITY = new RtCorrection(new double[0], new double[0]);
+
+    private final double[] knotRts;
+    private final double[] knotShifts;
+
+    /**
+     * @param knotRts    The observed RTs of the knots, in ascending order.
+     * @param knotShifts The shift to add to an RT observed at each knot.
+     */
+    public RtCorrection(double[] knotRts, double[] knotShifts) {
+        if (knotRts.length != knotShifts.length) {
+            throw new IllegalArgumentException("Expected one shift per knot");
+        }
+        for (int i = 1; i < knotRts.length; i++) {
+            if (knotRts[i] <= knotRts[i - 1]) {
+                throw new IllegalArgumentException("Knot RTs must be strictly ascending");
+            }
+        }
+        this.knotRts = knotRts.clone();
+        this.knotShifts = knotShifts.clone();
+    }
+
+    public double apply(double rtMin) {
+        int n = knotRts.length;
+        if (n == 0) return rtMin;
+        if (rtMin <= knotRts[0]) return rtMin + knotShifts[0];
+        if (rtMin >= knotRts[n - 1]) return rtMin + knotShifts[n - 1];
+        int low = 0;
+        int high = n - 1;
+        while (high - low > 1) {
+            int mid = (low + high) >>> 1;
+            if (knotRts[mid] <= rtMin) low = mid;
+            else high = mid;
+        }
+        double fraction = (rtMin - knotRts[low]) / (knotRts[high] - knotRts[low]);
+        return rtMin + knotShifts[low] + fraction * (knotShifts[high] - knotShifts[low]);
+    }
+
+    /**
+     * @return New features with the corrected RT, in the same order.
+     */
+    public List<Feature> apply(List<Feature> features) {
+        if (knotRts.length == 0) return features;
+        List<Feature> corrected = new ArrayList<>(features.size());
+        for (Feature feature : features) {
+            corrected.add(new Feature(feature.getMz(), feature.getIntensity(), apply(feature.getRtMin())));
+        }
+        return corrected;
+    }
+
+    public int getKnotCount() {
+        return knotRts.length;
+    }
+}
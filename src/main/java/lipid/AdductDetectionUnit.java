@@ -0,0 +1,55 @@
+package lipid;
+
+import org.drools.ruleunits.api.DataSource;
+import org.drools.ruleunits.api.DataStore;
+import org.drools.ruleunits.api.RuleUnitData;
+import org.drools.ruleunits.api.SingletonStore;
+
+/**
+ * Rule unit that detects adducts from the m/z differences of the peaks of a group, as an alternative to the
+ * imperative loops of {@link Annotation}. Peaks and adduct relations are inserted as facts; the rules predict
+ * the m/z of the other adducts of every base peak and join them with the peaks of the same group and m/z
+ * bucket.
+ */
+public class AdductDetectionUnit implements RuleUnitData {
+
+    private final DataStore<PeakFact> peaks;
+    private final DataStore<AdductRelation> relations;
+    private final DataStore<AdductHypothesis> hypotheses;
+    private final SingletonStore<MzBuckets> buckets;
+    private final SingletonStore<AdductDetections> detections;
+
+    public AdductDetectionUnit() {
+        this(new MzBuckets(10), new AdductDetections(0));
+    }
+
+    public AdductDetectionUnit(MzBuckets buckets, AdductDetections detections) {
+        this.peaks = DataSource.createStore();
+        this.relations = DataSource.createStore();
+        this.hypotheses = DataSource.createStore();
+        this.buckets = DataSource.createSingleton();
+        this.buckets.set(buckets);
+        this.detections = DataSource.createSingleton();
+        this.detections.set(detections);
+    }
+
+    public DataStore<PeakFact> getPeaks() {
+        return peaks;
+    }
+
+    public DataStore<AdductRelation> getRelations() {
+        return relations;
+    }
+
+    public DataStore<AdductHypothesis> getHypotheses() {
+        return hypotheses;
+    }
+
+    public SingletonStore<MzBuckets> getBuckets() {
+        return buckets;
+    }
+
+    public SingletonStore<AdductDetections> getDetections() {
+        return detections;
+    }
+}
@@ -0,0 +1,36 @@
+package lipid;
+
+/**
+ * Collects the adducts detected by the rules of the {@link AdductDetectionUnit}. When several peaks of a group
+ * confirm an adduct, the same choice as the imperative detection is kept: the lowest m/z peak and then the
+ * first adduct of the registry.
+ */
+public class AdductDetections {
+
+    private final String[] adducts;
+    private final int[] otherIndexes;
+    private final int[] ranks;
+
+    public AdductDetections(int groups) {
+        this.adducts = new String[groups];
+        this.otherIndexes = new int[groups];
+        this.ranks = new int[groups];
+    }
+
+    public void offer(int groupId, int otherIndex, AdductRelation relation) {
+        if (adducts[groupId] == null
+                || otherIndex < otherIndexes[groupId]
+                || (otherIndex == otherIndexes[groupId] && relation.getRank1() < ranks[groupId])) {
+            adducts[groupId] = relation.getAdduct1();
+            otherIndexes[groupId] = otherIndex;
+            ranks[groupId] = relation.getRank1();
+        }
+    }
+
+    /**
+     * @return The adduct detected for the group, or {@code null} if none was detected.
+     */
+    public String getAdduct(int groupId) {
+        return adducts[groupId];
+    }
+}
@@ -0,0 +1,53 @@
+package lipid;
+
+import adduct.Adduct;
+
+/**
+ * Fact created by the rules for a base peak and an {@link AdductRelation}: if the base peak is {@code adduct1},
+ * a peak of the same group should be found at {@code predictedMz} in the given m/z bucket.
+ */
+public class AdductHypothesis {
+
+    private final int groupId;
+    private final AdductRelation relation;
+    private final double predictedMz;
+    private final long bucket;
+    private final int ppmTolerance;
+
+    public AdductHypothesis(int groupId, AdductRelation relation, double predictedMz, long bucket, int ppmTolerance) {
+        this.groupId = groupId;
+        this.relation = relation;
+        this.predictedMz = predictedMz;
+        this.bucket = bucket;
+        this.ppmTolerance = ppmTolerance;
+    }
+
+    /**
+     * @return Whether a peak at {@code mz} confirms the hypothesis, with the same ppm check as
+     * {@link Annotation#detectAdduct(double, IoniationMode, SignalGroup)}.
+     */
+    public boolean accepts(double mz) {
+        return Adduct.calculatePPMIncrement(mz, predictedMz) <= ppmTolerance;
+    }
+
+    public int getGroupId() {
+        return groupId;
+    }
+
+    public AdductRelation getRelation() {
+        return relation;
+    }
+
+    public double getPredictedMz() {
+        return predictedMz;
+    }
+
+    public long getBucket() {
+        return bucket;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("AdductHypothesis(group=%d, %s, predictedMz=%.4f, bucket=%d)", groupId, relation, predictedMz, bucket);
+    }
+}
@@ -0,0 +1,103 @@
+package lipid;
+
+import adduct.Adduct;
+import adduct.AdductList;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fact relating two adducts of the same ionization mode: the m/z of the second adduct of a molecule is an
+ * affine function of the m/z of the first one. The relations are computed once from the adduct registry.
+ */
+public class AdductRelation {
+
+    private static final List<AdductRelation> POSITIVE_RELATIONS = relationsOf(IoniationMode.POSITIVE, AdductList.MAPMZPOSITIVEADDUCTS);
+    private static final List<AdductRelation> NEGATIVE_RELATIONS = relationsOf(IoniationMode.NEGATIVE, AdductList.MAPMZNEGATIVEADDUCTS);
+
+    private final IoniationMode ionizationMode;
+    private final String adduct1;
+    private final int rank1;
+    private final String adduct2;
+    private final int rank2;
+    private final double slope;
+    private final double intercept;
+
+    public AdductRelation(IoniationMode ionizationMode, String adduct1, int rank1, String adduct2, int rank2, double slope, double intercept) {
+        this.ionizationMode = ionizationMode;
+        this.adduct1 = adduct1;
+        this.rank1 = rank1;
+        this.adduct2 = adduct2;
+        this.rank2 = rank2;
+        this.slope = slope;
+        this.intercept = intercept;
+    }
+
+    /**
+     * @return Every ordered pair of different adducts of the ionization mode.
+     */
+    public static List<AdductRelation> of(IoniationMode ionizationMode) {
+        return ionizationMode == IoniationMode.NEGATIVE ? NEGATIVE_RELATIONS : POSITIVE_RELATIONS;
+    }
+
+    private static List<AdductRelation> relationsOf(IoniationMode ionizationMode, Map<String, Double> adductMap) {
+        List<AdductRelation> relations = new ArrayList<>();
+        int rank1 = 0;
+        for (Map.Entry<String, Double> adduct1 : adductMap.entrySet()) {
+            int rank2 = 0;
+            for (Map.Entry<String, Double> adduct2 : adductMap.entrySet()) {
+                if (!adduct1.getKey().equals(adduct2.getKey())) {
+                    // both conversions are affine, so two points define the m/z of adduct2 from the m/z of adduct1
+                    double at0 = Adduct.getMZFromMonoisotopicMass(Adduct.getMonoisotopicMassFromMZ(0d, adduct1), adduct2);
+                    double at1 = Adduct.getMZFromMonoisotopicMass(Adduct.getMonoisotopicMassFromMZ(1d, adduct1), adduct2);
+                    relations.add(new AdductRelation(ionizationMode, adduct1.getKey(), rank1, adduct2.getKey(), rank2, at1 - at0, at0));
+                }
+                rank2++;
+            }
+            rank1++;
+        }
+        return Collections.unmodifiableList(relations);
+    }
+
+    /**
+     * @return The m/z of {@code adduct2} of the molecule whose {@code adduct1} is observed at {@code mz}.
+     */
+    public double predictMz(double mz) {
+        return slope * mz + intercept;
+    }
+
+    public double getSlope() {
+        return slope;
+    }
+
+    public double getIntercept() {
+        return intercept;
+    }
+
+    public IoniationMode getIonizationMode() {
+        return ionizationMode;
+    }
+
+    public String getAdduct1() {
+        return adduct1;
+    }
+
+    public int getRank1() {
+        return rank1;
+    }
+
+    public String getAdduct2() {
+        return adduct2;
+    }
+
+    public int getRank2() {
+        return rank2;
+    }
+
+    @Override
+    public String toString() {
+        return "AdductRelation{" + adduct1 + " -> " + adduct2 + '}';
+    }
+}
@@ -0,0 +1,73 @@
+package lipid;
+
+import adduct.Adduct;
+import adduct.AdductList;
+
+import java.util.List;
+
+/**
+ * Precomputed adduct pairs of an ionization mode, shared by every adduct detection.
+ * <p>
+ * The m/z of the second adduct of a molecule is an affine function of the m/z of the first one (see
+ * {@link AdductRelation}), so the table stores the slope and intercept of every ordered pair in flat arrays, in
+ * the order of the adduct registry. Detecting an adduct is then a scan of two arrays, instead of converting the
+ * m/z to a mass and back for every pair.
+ * </p>
+ */
+public final class AdductTable {
+
+    private static final int PPM_TOLERANCE = 10;
+
+    private static final AdductTable POSITIVE = new AdductTable(AdductRelation.of(IoniationMode.POSITIVE));
+    private static final AdductTable NEGATIVE = new AdductTable(AdductRelation.of(IoniationMode.NEGATIVE));
+
+    private final byte[] baseAdductIds;
+    private final double[] slopes;
+    private final double[] intercepts;
+
+    private AdductTable(List<AdductRelation> relations) {
+        this.baseAdductIds = new byte[relations.size()];
+        this.slopes = new double[relations.size()];
+        this.intercepts = new double[relations.size()];
+        for (int i = 0; i < relations.size(); i++) {
+            AdductRelation relation = relations.get(i);
+            baseAdductIds[i] = AdductList.getAdductId(relation.getAdduct1());
+            slopes[i] = relation.getSlope();
+            intercepts[i] = relation.getIntercept();
+        }
+    }
+
+    public static AdductTable of(IoniationMode ionizationMode) {
+        return ionizationMode == IoniationMode.NEGATIVE ? NEGATIVE : POSITIVE;
+    }
+
+    /**
+     * Detects the adduct of the signal at {@code mz} by comparing its peak with the lowest m/z peak of the group
+     * besides it. The first adduct of the registry for which any other adduct explains the m/z of that peak
+     * within 10 ppm is returned.
+     *
+     * @return The id of the detected adduct in {@link AdductList}, or {@link AdductList#NO_ADDUCT} if the signal
+     * is not in the group, the group has a single peak or no adduct pair matches.
+     */
+    public byte detect(double mz, SignalGroup groupedSignals) {
+        // peaks are sorted by m/z, so the other peak compared with the base one is the lowest m/z peak besides it
+        for (int i = 0; i < groupedSignals.size(); i++) {
+            double baseMz = groupedSignals.getMz(i);
+            //this condition assures that the base peak corresponds to the reference peak specified as parameter
+            if (Math.abs(baseMz - mz) < 0.01) {
+                if (groupedSignals.size() < 2) return AdductList.NO_ADDUCT;
+                return detectFromMz(baseMz, groupedSignals.getMz(i == 0 ? 1 : 0));
+            }
+        }
+        return AdductList.NO_ADDUCT;
+    }
+
+    private byte detectFromMz(double baseMz, double otherMz) {
+        for (int i = 0; i < slopes.length; i++) {
+            if (Adduct.calculatePPMIncrement(otherMz, slopes[i] * baseMz + intercepts[i]) <= PPM_TOLERANCE) {
+                return baseAdductIds[i];
+            }
+        }
+        return AdductList.NO_ADDUCT;
+    }
+}
@@ -1,130 +1,180 @@
 package lipid;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 import adduct.AdductList;
-import adduct.Adduct;
 
 /**
  * Class to represent the annotation over a lipid
  */
 public class Annotation {
 
+    // adductId of an annotation whose adduct has not been detected yet
+    private static final byte ADDUCT_NOT_DETECTED = -2;
+    // isotopeFit of an annotation that has not been scored by an IsotopePatternScorer
+    private static final float ISOTOPE_FIT_NOT_SCORED = -1f;
+
     private final Lipid lipid;
     private final double mz;
     private final double intensity;
     private final double rtMin;
     private final IoniationMode ionizationMode;
-    private String adduct;
-    private final Set<Peak> groupedSignals;
+    private volatile byte adductId;
+    private byte matchedAdductId = AdductList.NO_ADDUCT;
+    private final SignalGroup groupedSignals;
+    private final int hash;
     private int score;
     private int totalScoresApplied;
+    private float isotopeFit = ISOTOPE_FIT_NOT_SCORED;
 
     public Annotation(Lipid lipid, double mz, double intensity, double retentionTime, IoniationMode ionizationMode) {
-        this(lipid, mz, intensity, retentionTime, ionizationMode, Collections.emptySet());
+        this(lipid, mz, intensity, retentionTime, ionizationMode, SignalGroup.EMPTY);
     }
 
     public Annotation(Lipid lipid, double mz, double intensity, double retentionTime, IoniationMode ionizationMode, Set<Peak> groupedSignals) {
+        this(lipid, mz, intensity, retentionTime, ionizationMode, SignalGroup.of(groupedSignals));
+    }
+
+    /**
+     * @param groupedSignals The peaks grouped with the annotated signal. The group is not copied, so every
+     *                       candidate annotation of the same peaks can share it.
+     */
+    public Annotation(Lipid lipid, double mz, double intensity, double retentionTime, IoniationMode ionizationMode, SignalGroup groupedSignals) {
         this.lipid = lipid;
         this.mz = mz;
         this.rtMin = retentionTime;
         this.intensity = intensity;
         this.ionizationMode = ionizationMode;
-        this.groupedSignals = new TreeSet<>(groupedSignals);
+        this.groupedSignals = groupedSignals;
+        this.hash = Objects.hash(lipid, mz, rtMin);
         this.score = 0;
         this.totalScoresApplied = 0;
-        if (groupedSignals != null && !groupedSignals.isEmpty()) {
-            this.adduct = detectAdductFromPeaks();
-        }
+        // detected on the first call to getAdduct() or detectAll()
+        this.adductId = groupedSignals.isEmpty() ? AdductList.NO_ADDUCT : ADDUCT_NOT_DETECTED;
     }
 
-    
     /**
      * Detects the most likely adduct based on the m/z values of grouped peaks.
      * <p>
      * This method analyzes the set of grouped signals (peaks) and compares their
-     * m/z values against a predefined map of known adducts. The detection process
-     * uses the current ionization mode (positive or negative) to select the appropriate
-     * adduct map and attempts to find a match between the peaks and known adduct
-     * m/z differences.
+     * m/z values against the precomputed adduct pairs of the current ionization mode
+     * (positive or negative), see {@link AdductTable}.
      * </p>
      *
-     * @return The detected adduct as a string, or {@code null} if no valid adduct
-     * could be detected.
+     * @return The id of the detected adduct, or {@link AdductList#NO_ADDUCT} if no valid adduct could be
+     * detected.
      */
-    private String detectAdductFromPeaks() {
-
-        List<Peak> peakList = new ArrayList<>(groupedSignals);
-        peakList.sort(Comparator.comparingDouble(Peak::getMz));
-
-        Map<String, Double> adductMap = null;
-        switch (ionizationMode){
-            case POSITIVE: adductMap = AdductList.MAPMZPOSITIVEADDUCTS; break;
-            case NEGATIVE: adductMap = AdductList.MAPMZNEGATIVEADDUCTS; break;
-        }
+    private byte detectAdductFromPeaks() {
+        return AdductTable.of(this.ionizationMode).detect(this.mz, this.groupedSignals);
+    }
 
-        for (int i = 0; i < peakList.size(); i++) {
-            Peak base = peakList.get(i);
-            //this condition assures that the base peak corresponds to the reference peak specified as parameter
-            if(Math.abs(base.getMz() - this.mz) < 0.01) {
-                for (int j = 0; j < peakList.size(); j++) {
-                    Peak other = peakList.get(j);
-                    if(other.equals(base)) continue;
-                    return detectAdductFromMz(base, other, adductMap);
-                }
-            }
-        }
-        return null;
+    /**
+     * Detects the adduct of the signal at {@code mz} using the peaks grouped with it. This is the
+     * same detection performed by each annotation, exposed so that it can be run on features that
+     * are not yet annotated with a lipid candidate.
+     *
+     * @param mz             The m/z of the reference peak.
+     * @param ionizationMode The ionization mode used to select the adduct map.
+     * @param groupedSignals The peaks grouped with the reference peak.
+     * @return The detected adduct as a string, or {@code null} if no valid adduct could be detected.
+     */
+    public static String detectAdduct(double mz, IoniationMode ionizationMode, Collection<Peak> groupedSignals) {
+        return detectAdduct(mz, ionizationMode, SignalGroup.of(groupedSignals));
     }
 
+    /**
+     * Same as {@link #detectAdduct(double, IoniationMode, Collection)} for peaks already grouped in a {@link SignalGroup}.
+     */
+    public static String detectAdduct(double mz, IoniationMode ionizationMode, SignalGroup groupedSignals) {
+        return AdductList.getAdductName(AdductTable.of(ionizationMode).detect(mz, groupedSignals));
+    }
 
     /**
-     * Detects the most likely adduct for a given peak by analyzing the relationship
-     * between two peaks and their theoretical monoisotopic masses, calculated using
-     * a predefined map of known adducts.
-     *
-     * <p>This method compares the m/z values of the peaks with all potential adduct
-     * combinations within a specified ppm tolerance, and returns the most
-     * appropriate adduct if a match is found.</p>
-     *
-     * @param base      The reference peak to compare against.
-     * @param other     Another peak from the grouped signals to analyze.
-     * @param adductMap A map of known adduct names and their respective m/z shifts.
-     * @return The name of the detected adduct as a string, or {@code null} if no match is found.
+     * Detects the adducts of many annotations at once, in parallel, with the shared {@link AdductTable} of
+     * their ionization mode. Consecutive annotations with the same signal and peak group (the candidates of one
+     * feature) reuse the same detection. Annotations whose adduct was already detected or recorded with
+     * {@link #setDetectedAdduct(String)} are skipped, so {@link #getAdduct()} is free afterwards.
      */
-    private String detectAdductFromMz(Peak base, Peak other, Map<String, Double> adductMap) {
-
-        int ppmTolerance = 10;
-        for (Map.Entry<String, Double> adduct1 : adductMap.entrySet()) {
-            Double M1 = Adduct.getMonoisotopicMassFromMZ(base.getMz(), adduct1); //theoretical monoisotopic mass, we assume it is right
-            //System.out.println("Theoretical monoisotopic mass: "+ M1 + " (from m/z: "+ base.getMz() + " and adduct: "+ adduct1.getKey() + ")");
-            for (Map.Entry<String, Double> adduct2 : adductMap.entrySet()) {
-                if(adduct1.getKey().equals(adduct2.getKey())) continue;
-                System.out.println("Trying adduct: "+ adduct2.getKey());
-
-                Double mz2 = Adduct.getMZFromMonoisotopicMass(M1, adduct2);
-                System.out.println(" - Calculated m/z: "+ mz2 + "\n - peakMz = " + other.getMz());
-                int ppmError = Adduct.calculatePPMIncrement(other.getMz(), mz2);
-
-                if(ppmError <= ppmTolerance) {
-                    System.out.println("Detected pair: ");
-                    System.out.println("- Adduct 1: "+ adduct1.getKey());
-                    System.out.println("- Adduct 2: "+ adduct2.getKey());
-                    return adduct1.getKey();
-                }
+    public static void detectAll(Collection<Annotation> annotations) {
+        Annotation[] array = annotations.toArray(new Annotation[0]);
+        int chunks = 4 * ForkJoinPool.getCommonPoolParallelism();
+        int chunk = Math.max(256, (array.length + chunks - 1) / chunks);
+        IntStream.range(0, (array.length + chunk - 1) / chunk).parallel().forEach(c -> {
+            Annotation previous = null;
+            byte previousId = AdductList.NO_ADDUCT;
+            for (int i = c * chunk; i < Math.min(array.length, (c + 1) * chunk); i++) {
+                Annotation annotation = array[i];
+                if (annotation.adductId != ADDUCT_NOT_DETECTED) continue;
+                boolean sameSignal = previous != null && previous.groupedSignals == annotation.groupedSignals
+                        && previous.mz == annotation.mz && previous.ionizationMode == annotation.ionizationMode;
+                byte id = sameSignal ? previousId : annotation.detectAdductFromPeaks();
+                annotation.memoizeAdduct(id);
+                previous = annotation;
+                previousId = id;
             }
-        }
-        return null;
+        });
+    }
+
+    private synchronized void memoizeAdduct(byte id) {
+        if (adductId == ADDUCT_NOT_DETECTED) adductId = id;
     }
 
     public Lipid getLipid() { return lipid; }
     public double getMz() { return mz; }
     public double getRtMin() { return rtMin; }
+    /**
+     * @return The adduct detected from the grouped peaks, or the one recorded with
+     * {@link #setDetectedAdduct(String)}. The detection runs once, on the first call, and is safe to trigger from
+     * several threads. The adduct the candidate was matched with is {@link #getMatchedAdduct()}.
+     */
     public String getAdduct() {
-        return this.detectAdductFromPeaks();
+        byte id = adductId;
+        if (id == ADDUCT_NOT_DETECTED) {
+            synchronized (this) {
+                id = adductId;
+                if (id == ADDUCT_NOT_DETECTED) {
+                    id = detectAdductFromPeaks();
+                    adductId = id;
+                }
+            }
+        }
+        return AdductList.getAdductName(id);
     }
-    public void setAdduct(String adduct) { this.adduct = adduct; }
+    /**
+     * Records the adduct detected for the signal of the annotation elsewhere (for example by the rules of
+     * {@link AdductDetectionUnit}), so {@link #getAdduct()} returns it without running the detection.
+     */
+    public synchronized void setDetectedAdduct(String adduct) { this.adductId = AdductList.getAdductId(adduct); }
+    /**
+     * @return The adduct used to match the lipid of the annotation, or {@code null} if none was set.
+     */
+    public String getMatchedAdduct() { return AdductList.getAdductName(matchedAdductId); }
+    /**
+     * Sets the adduct used to match the lipid of the annotation. It does not change the detected adduct
+     * returned by {@link #getAdduct()}.
+     */
+    public void setAdduct(String adduct) { this.matchedAdductId = AdductList.getAdductId(adduct); }
     public double getIntensity() { return intensity; }
-    public Set<Peak> getGroupedSignals() { return groupedSignals; }
+    public IoniationMode getIonizationMode() { return ionizationMode; }
+    /**
+     * @return The grouped peaks as an unmodifiable sorted set. The set is a copy of the {@link SignalGroup},
+     * built on the first call and shared by every annotation of the group, so changes to the peaks are not
+     * possible through it. Code inside the library reads {@link #getSignals()}, which needs no {@link Peak}
+     * objects.
+     */
+    public Set<Peak> getGroupedSignals() { return groupedSignals.toPeaks(); }
+    public SignalGroup getSignals() { return groupedSignals; }
+    /**
+     * @return Whether the isotope fit was stored by {@link IsotopePatternScorer#score(Annotation)}.
+     */
+    public boolean hasIsotopeFit() { return isotopeFit != ISOTOPE_FIT_NOT_SCORED; }
+    /**
+     * @return The stored isotope fit, between 0 and 1, or {@code NaN} if the isotope peaks were not observed or
+     * the annotation was not scored.
+     */
+    public double getIsotopeFit() { return hasIsotopeFit() ? isotopeFit : Double.NaN; }
+    public void setIsotopeFit(double isotopeFit) { this.isotopeFit = (float) isotopeFit; }
     public void addScore(int delta) {
         this.score += delta;
         this.totalScoresApplied++;
@@ -147,7 +197,15 @@ public class Annotation {
 
     @Override
     public int hashCode() {
-        return Objects.hash(lipid, mz, rtMin);
+        return hash;
+    }
+
+    /**
+     * The stored detection, without running it, so that logging an annotation does not detect its adduct.
+     */
+    private String detectedAdductToString() {
+        byte id = adductId;
+        return id == ADDUCT_NOT_DETECTED ? "not detected" : "'" + AdductList.getAdductName(id) + "'";
     }
 
     @Override
@@ -157,7 +215,8 @@ public class Annotation {
                 ", mz=" + mz +
                 ", intensity=" + intensity +
                 ", rtMin=" + rtMin +
-                ", adduct='" + adduct + '\'' +
+                ", detectedAdduct=" + detectedAdductToString() +
+                ", matchedAdduct='" + getMatchedAdduct() + '\'' +
                 ", score=" + score +
                 '}';
     }
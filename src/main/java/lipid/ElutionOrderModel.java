@@ -0,0 +1,219 @@
+package lipid;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Expected elution order of the lipids in a chromatography method, used by the rules of the
+ * {@link LipidScoreUnit}.
+ * <p>
+ * A method is described by a properties file ({@code lipid/elution/<method>.properties} in the classpath, or
+ * any file given to {@link #load(Path)}) with the order of the lipid classes and the direction of the three
+ * rule templates:
+ * </p>
+ * <pre>
+ * order.PG=1
+ * order.PC=100
+ * order.default=10
+ * template.carbonCount=later
+ * template.doubleBonds=earlier
+ * template.lipidType=later
+ * </pre>
+ * <p>
+ * Each template compares lipids that only differ in one attribute (carbon count, double bonds or class order)
+ * and states whether a larger value elutes {@code later}, {@code earlier} or is not scored ({@code none}). The
+ * file is read once per method and compiled into a table indexed by {@link LipidType#ordinal()}, so the rules
+ * only do array lookups.
+ * </p>
+ */
+public final class ElutionOrderModel {
+
+    /**
+     * System property with the method used by {@link #getDefault()}.
+     */
+    public static final String METHOD_PROPERTY = "lipid.elution.method";
+    public static final String DEFAULT_METHOD = "default";
+
+    private static final Map<String, ElutionOrderModel> METHODS = new ConcurrentHashMap<>();
+
+    private final String method;
+    private final int[] lipidTypeOrders;
+    private final int carbonCountDirection;
+    private final int doubleBondsDirection;
+    private final int lipidTypeDirection;
+
+    private ElutionOrderModel(String method, int[] lipidTypeOrders, int carbonCountDirection, int doubleBondsDirection,
+                              int lipidTypeDirection) {
+        this.method = method;
+        this.lipidTypeOrders = lipidTypeOrders;
+        this.carbonCountDirection = carbonCountDirection;
+        this.doubleBondsDirection = doubleBondsDirection;
+        this.lipidTypeDirection = lipidTypeDirection;
+    }
+
+    /**
+     * @return The model of the method named by the {@value #METHOD_PROPERTY} system property, or of the
+     * {@value #DEFAULT_METHOD} method when it is not set.
+     */
+    public static ElutionOrderModel getDefault() {
+        return forMethod(System.getProperty(METHOD_PROPERTY, DEFAULT_METHOD));
+    }
+
+    /**
+     * @return The model of the method described by {@code lipid/elution/<method>.properties} in the classpath,
+     * read the first time it is requested.
+     * @throws IllegalArgumentException if the method is not in the classpath or its description is not valid.
+     */
+    public static ElutionOrderModel forMethod(String method) {
+        return METHODS.computeIfAbsent(method, ElutionOrderModel::readMethod);
+    }
+
+    /**
+     * @return The model of the method described by the properties file.
+     * @throws IllegalArgumentException if the description is not valid.
+     */
+    public static ElutionOrderModel load(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file)) {
+            properties.load(reader);
+        }
+        String name = file.getFileName().toString();
+        return compile(name.endsWith(".properties") ? name.substring(0, name.length() - ".properties".length()) : name,
+                properties);
+    }
+
+    /**
+     * Compiles a method description. Classes without an {@code order.<class>} entry get {@code order.default}.
+     *
+     * @throws IllegalArgumentException if an entry names an unknown class or template, or has an invalid value.
+     */
+    public static ElutionOrderModel compile(String method, Properties properties) {
+        int[] orders = new int[LipidType.values().length];
+        Arrays.fill(orders, parseOrder(properties, "order.default", "0"));
+        int carbonCount = 0;
+        int doubleBonds = 0;
+        int lipidType = 0;
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith("order.")) {
+                String type = key.substring("order.".length());
+                if (type.equals("default")) continue;
+                try {
+                    orders[LipidType.valueOf(type).ordinal()] = parseOrder(properties, key, null);
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Unknown lipid type in " + method + ": " + key, e);
+                }
+            } else if (key.startsWith("template.")) {
+                int direction = parseDirection(method, key, properties.getProperty(key));
+                switch (key.substring("template.".length())) {
+                    case "carbonCount": carbonCount = direction; break;
+                    case "doubleBonds": doubleBonds = direction; break;
+                    case "lipidType": lipidType = direction; break;
+                    default: throw new IllegalArgumentException("Unknown rule template in " + method + ": " + key);
+                }
+            } else {
+                throw new IllegalArgumentException("Unknown entry in " + method + ": " + key);
+            }
+        }
+        return new ElutionOrderModel(method, orders, carbonCount, doubleBonds, lipidType);
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * @return The relative elution order of the lipid class among lipids with the same carbons and double
+     * bonds: a larger order elutes later.
+     */
+    public int getLipidTypeOrder(LipidType type) {
+        return lipidTypeOrders[type.ordinal()];
+    }
+
+    /**
+     * @return 1 if lipids with more carbons (and the same class and double bonds) elute later, -1 if they elute
+     * earlier and 0 if the template is disabled.
+     */
+    public int getCarbonCountDirection() {
+        return carbonCountDirection;
+    }
+
+    /**
+     * @return 1 if lipids with more double bonds (and the same class and carbons) elute later, -1 if they elute
+     * earlier and 0 if the template is disabled.
+     */
+    public int getDoubleBondsDirection() {
+        return doubleBondsDirection;
+    }
+
+    /**
+     * @return 1 if lipids of a class with a larger order (and the same carbons and double bonds) elute later, -1
+     * if they elute earlier and 0 if the template is disabled.
+     */
+    public int getLipidTypeDirection() {
+        return lipidTypeDirection;
+    }
+
+    /**
+     * Scores a pair of annotations whose attribute is larger in the first one.
+     *
+     * @param direction The direction of the template that compares the attribute.
+     * @param rtLarger  The RT of the annotation with the larger attribute.
+     * @param rtSmaller The RT of the annotation with the smaller attribute.
+     * @return 1 if the RTs agree with the direction, -1 if they contradict it and 0 if they are equal.
+     */
+    public static int agreement(int direction, double rtLarger, double rtSmaller) {
+        return direction * Double.compare(rtLarger, rtSmaller);
+    }
+
+    private static ElutionOrderModel readMethod(String method) {
+        String resource = "lipid/elution/" + method + ".properties";
+        try (InputStream in = ElutionOrderModel.class.getClassLoader().getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalArgumentException("Unknown chromatography method: " + method);
+            }
+            Properties properties = new Properties();
+            properties.load(in);
+            return compile(method, properties);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read " + resource, e);
+        }
+    }
+
+    private static int parseOrder(Properties properties, String key, String defaultValue) {
+        String value = properties.getProperty(key, defaultValue).trim();
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid order " + key + "=" + value, e);
+        }
+    }
+
+    private static int parseDirection(String method, String key, String value) {
+        switch (value.trim().toLowerCase(Locale.ROOT)) {
+            case "later": return 1;
+            case "earlier": return -1;
+            case "none": return 0;
+            default: throw new IllegalArgumentException("Invalid direction in " + method + ": " + key + "=" + value);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ElutionOrderModel{" +
+                "method='" + method + '\'' +
+                ", lipidTypeOrders=" + Arrays.toString(lipidTypeOrders) +
+                ", carbonCountDirection=" + carbonCountDirection +
+                ", doubleBondsDirection=" + doubleBondsDirection +
+                ", lipidTypeDirection=" + lipidTypeDirection +
+                '}';
+    }
+}
@@ -0,0 +1,99 @@
+package lipid;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Class to represent the elemental composition of a molecular formula (e.g. "C42H82NO8P")
+ */
+public class Formula {
+
+    private static final Pattern ELEMENT_PATTERN = Pattern.compile("([A-Z][a-z]?)([0-9]*)");
+
+    private static final Map<String, Double> MONOISOTOPIC_ELEMENT_MASSES;
+
+    static {
+        Map<String, Double> massesTMP = new LinkedHashMap<>();
+        massesTMP.put("C", 12.0d);
+        massesTMP.put("H", 1.00782503207d);
+        massesTMP.put("N", 14.0030740048d);
+        massesTMP.put("O", 15.99491461956d);
+        massesTMP.put("P", 30.97376163d);
+        massesTMP.put("S", 31.97207100d);
+        massesTMP.put("Na", 22.9897692809d);
+        massesTMP.put("K", 38.96370668d);
+        massesTMP.put("Cl", 34.96885268d);
+        MONOISOTOPIC_ELEMENT_MASSES = Collections.unmodifiableMap(massesTMP);
+    }
+
+    private final String formula;
+    private final Map<String, Integer> elements;
+    private final double monoisotopicMass;
+
+    private Formula(String formula, Map<String, Integer> elements, double monoisotopicMass) {
+        this.formula = formula;
+        this.elements = elements;
+        this.monoisotopicMass = monoisotopicMass;
+    }
+
+    /**
+     * Parses a molecular formula written as a sequence of element symbols followed by optional counts.
+     *
+     * @param formula The formula, e.g. "C57H104O6".
+     * @return The parsed formula.
+     * @throws IllegalArgumentException if the formula is empty, malformed or contains an unknown element.
+     */
+    public static Formula parse(String formula) {
+        if (formula == null || formula.isEmpty()) {
+            throw new IllegalArgumentException("Empty formula");
+        }
+        Map<String, Integer> elements = new LinkedHashMap<>();
+        double mass = 0d;
+        Matcher m = ELEMENT_PATTERN.matcher(formula);
+        int end = 0;
+        while (m.find()) {
+            if (m.start() != end) break;
+            end = m.end();
+            String element = m.group(1);
+            Double elementMass = MONOISOTOPIC_ELEMENT_MASSES.get(element);
+            if (elementMass == null) {
+                throw new IllegalArgumentException("Unknown element " + element + " in formula " + formula);
+            }
+            int count = m.group(2).isEmpty() ? 1 : Integer.parseInt(m.group(2));
+            elements.merge(element, count, Integer::sum);
+            mass += elementMass * count;
+        }
+        if (end != formula.length()) {
+            throw new IllegalArgumentException("Malformed formula " + formula);
+        }
+        return new Formula(formula, Collections.unmodifiableMap(elements), mass);
+    }
+
+    public String getFormula() {
+        return formula;
+    }
+
+    /**
+     * @param element The element symbol, e.g. "C".
+     * @return The number of atoms of the element in the formula, 0 if it is not present.
+     */
+    public int getElementCount(String element) {
+        return elements.getOrDefault(element, 0);
+    }
+
+    public Map<String, Integer> getElements() {
+        return elements;
+    }
+
+    public double getMonoisotopicMass() {
+        return monoisotopicMass;
+    }
+
+    @Override
+    public String toString() {
+        return formula;
+    }
+}
@@ -0,0 +1,29 @@
+package lipid;
+
+/**
+ * Predicted isotope envelope of a formula: the abundances of the M+1 and M+2 isotopologues relative to the
+ * monoisotopic (M) one.
+ */
+public class IsotopePattern {
+
+    private final double relativeAbundanceM1;
+    private final double relativeAbundanceM2;
+
+    public IsotopePattern(double relativeAbundanceM1, double relativeAbundanceM2) {
+        this.relativeAbundanceM1 = relativeAbundanceM1;
+        this.relativeAbundanceM2 = relativeAbundanceM2;
+    }
+
+    public double getRelativeAbundanceM1() {
+        return relativeAbundanceM1;
+    }
+
+    public double getRelativeAbundanceM2() {
+        return relativeAbundanceM2;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("IsotopePattern(M+1=%.4f, M+2=%.4f)", relativeAbundanceM1, relativeAbundanceM2);
+    }
+}
@@ -0,0 +1,160 @@
+package lipid;
+
+import adduct.Adduct;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Scores annotations by comparing the isotope envelope predicted from {@link Lipid#getFormula()} with the
+ * intensities of the grouped peaks of the annotation.
+ * <p>
+ * The M+1 and M+2 abundances are predicted from the natural abundance of the heavy isotopes of each element
+ * (M+2 also includes the contribution of two M+1 isotopes) and cached per formula, so scoring a candidate
+ * only costs two lookups in its grouped peaks. This makes it cheap enough to run on every database candidate
+ * before the elution order rules.
+ * </p>
+ */
+public class IsotopePatternScorer {
+
+    /**
+     * Mass difference between the 13C and 12C isotopes, used as the spacing of the envelope.
+     */
+    public static final double ISOTOPE_MASS_DIFFERENCE = 1.0033548d;
+
+    /**
+     * Default fit from which an isotope envelope is accepted. With the default abundance tolerance of 30% it
+     * accepts relative abundance errors up to 15%.
+     */
+    public static final double DEFAULT_ACCEPTANCE_THRESHOLD = 0.5d;
+
+    private static final Map<String, Double> M1_ABUNDANCE_RATIOS;
+    private static final Map<String, Double> M2_ABUNDANCE_RATIOS;
+
+    static {
+        // abundance of the heavy isotope relative to the lightest one
+        Map<String, Double> m1RatiosTMP = new LinkedHashMap<>();
+        m1RatiosTMP.put("C", 0.0107d / 0.9893d);
+        m1RatiosTMP.put("H", 0.000115d / 0.999885d);
+        m1RatiosTMP.put("N", 0.00364d / 0.99636d);
+        m1RatiosTMP.put("O", 0.00038d / 0.99757d);
+        m1RatiosTMP.put("S", 0.0075d / 0.9499d);
+        M1_ABUNDANCE_RATIOS = Collections.unmodifiableMap(m1RatiosTMP);
+
+        Map<String, Double> m2RatiosTMP = new LinkedHashMap<>();
+        m2RatiosTMP.put("O", 0.00205d / 0.99757d);
+        m2RatiosTMP.put("S", 0.0425d / 0.9499d);
+        m2RatiosTMP.put("K", 0.067302d / 0.932581d);
+        m2RatiosTMP.put("Cl", 0.2424d / 0.7576d);
+        M2_ABUNDANCE_RATIOS = Collections.unmodifiableMap(m2RatiosTMP);
+    }
+
+    private final Map<String, IsotopePattern> patternCache = new ConcurrentHashMap<>();
+    private final int ppmTolerance;
+    private final double abundanceTolerance;
+    private final double acceptanceThreshold;
+
+    public IsotopePatternScorer() {
+        this(10, 0.3d);
+    }
+
+    public IsotopePatternScorer(int ppmTolerance, double abundanceTolerance) {
+        this(ppmTolerance, abundanceTolerance, DEFAULT_ACCEPTANCE_THRESHOLD);
+    }
+
+    /**
+     * @param ppmTolerance        The m/z tolerance, in ppm, to find the isotope peaks.
+     * @param abundanceTolerance  The maximum relative error between the observed and the predicted abundance
+     *                            of an isotope peak (0.3 means 30%).
+     * @param acceptanceThreshold The fit, between 0 and 1, from which an isotope envelope is accepted.
+     */
+    public IsotopePatternScorer(int ppmTolerance, double abundanceTolerance, double acceptanceThreshold) {
+        this.ppmTolerance = ppmTolerance;
+        this.abundanceTolerance = abundanceTolerance;
+        this.acceptanceThreshold = acceptanceThreshold;
+    }
+
+    /**
+     * @return The predicted isotope envelope of the formula, computed once per formula.
+     */
+    public IsotopePattern predict(String formula) {
+        return patternCache.computeIfAbsent(formula, IsotopePatternScorer::computePattern);
+    }
+
+    /**
+     * Computes how well the grouped peaks of the annotation fit the isotope envelope of its lipid.
+     *
+     * @return A value between 0 (the observed isotopes do not fit) and 1 (perfect fit), or {@code NaN} if the
+     * M+1 peak was not observed and therefore the fit cannot be assessed.
+     */
+    public double fit(Annotation annotation) {
+        if (annotation.getSignals().isEmpty() || annotation.getIntensity() <= 0) return Double.NaN;
+        IsotopePattern pattern = predict(annotation.getLipid().getFormula());
+        // the matched adduct is the detected one whenever an adduct was detected
+        String adduct = annotation.getMatchedAdduct();
+        if (adduct == null) adduct = annotation.getAdduct();
+        int charge = adduct == null ? 1 : Adduct.getAdductCharge(adduct);
+        double spacing = ISOTOPE_MASS_DIFFERENCE / charge;
+
+        double intensityM1 = findIntensity(annotation, annotation.getMz() + spacing);
+        if (Double.isNaN(intensityM1)) return Double.NaN;
+        double fit = abundanceFit(intensityM1 / annotation.getIntensity(), pattern.getRelativeAbundanceM1());
+
+        double intensityM2 = findIntensity(annotation, annotation.getMz() + 2 * spacing);
+        if (!Double.isNaN(intensityM2)) {
+            fit = (fit + abundanceFit(intensityM2 / annotation.getIntensity(), pattern.getRelativeAbundanceM2())) / 2;
+        }
+        return fit;
+    }
+
+    /**
+     * @return Whether a fit computed by {@link #fit(Annotation)} reaches the acceptance threshold. A fit that
+     * cannot be assessed ({@code NaN}) is not accepted.
+     */
+    public boolean accepts(double fit) {
+        return fit >= acceptanceThreshold;
+    }
+
+    /**
+     * Scores the annotation with +1 when its isotope envelope is accepted (see {@link #accepts(double)}) and -1
+     * when it is not. The annotation is not scored when the isotope peaks were not observed. The fit is stored
+     * in the annotation, so later stages read it with {@link Annotation#getIsotopeFit()} instead of computing it
+     * again.
+     *
+     * @return The fit computed by {@link #fit(Annotation)}.
+     */
+    public double score(Annotation annotation) {
+        double fit = fit(annotation);
+        annotation.setIsotopeFit(fit);
+        if (!Double.isNaN(fit)) {
+            annotation.addScore(accepts(fit) ? 1 : -1);
+        }
+        return fit;
+    }
+
+    private double abundanceFit(double observed, double predicted) {
+        double relativeError = Math.abs(observed - predicted) / predicted;
+        return Math.max(0d, 1d - relativeError / abundanceTolerance);
+    }
+
+    private double findIntensity(Annotation annotation, double mz) {
+        SignalGroup signals = annotation.getSignals();
+        int index = signals.indexOf(mz, mz * ppmTolerance / 1_000_000.0);
+        return index < 0 ? Double.NaN : signals.getIntensity(index);
+    }
+
+    private static IsotopePattern computePattern(String formula) {
+        Formula parsed = Formula.parse(formula);
+        double m1 = 0d;
+        for (Map.Entry<String, Double> ratio : M1_ABUNDANCE_RATIOS.entrySet()) {
+            m1 += parsed.getElementCount(ratio.getKey()) * ratio.getValue();
+        }
+        double m2 = m1 * m1 / 2;
+        for (Map.Entry<String, Double> ratio : M2_ABUNDANCE_RATIOS.entrySet()) {
+            m2 += parsed.getElementCount(ratio.getKey()) * ratio.getValue();
+        }
+        return new IsotopePattern(m1, m2);
+    }
+}
@@ -52,16 +52,12 @@ public class Lipid {
         return doubleBondsCount;
     }
 
+    /**
+     * @return The elution order of the lipid class in the default chromatography method.
+     * @see ElutionOrderModel#getDefault()
+     */
     public int getLipidTypeOrder(LipidType type) {
-        switch (type) {
-            case PG: return 1; //Phosphatidylglycerol
-            case PE: return 2; //Phosphatidylethanolamine
-            case PI: return 3; //Phosphatidylinositol
-            case PA: return 4; //Phosphatidic acid
-            case PS: return 5; //Phosphatidylserine
-            case PC: return 100; //Phosphatidylcholine
-            default: return 10; //Triacylglycerol
-        }
+        return ElutionOrderModel.getDefault().getLipidTypeOrder(type);
     }
 
     @Override
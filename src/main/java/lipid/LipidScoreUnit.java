@@ -3,8 +3,7 @@ package lipid;
 import org.drools.ruleunits.api.DataSource;
 import org.drools.ruleunits.api.DataStore;
 import org.drools.ruleunits.api.RuleUnitData;
-
-import java.util.HashSet;
+import org.drools.ruleunits.api.SingletonStore;
 
 public class LipidScoreUnit implements RuleUnitData {
 
@@ -12,17 +11,31 @@ public class LipidScoreUnit implements RuleUnitData {
     //not needed since you do not need to store the triggered data
 
     private final DataStore<Annotation> annotations;
+    private final SingletonStore<ElutionOrderModel> elutionOrder;
 
     public LipidScoreUnit() {
         this(DataSource.createStore());
     }
 
     public LipidScoreUnit(DataStore<Annotation> annotations) {
+        this(annotations, ElutionOrderModel.getDefault());
+    }
+
+    /**
+     * @param elutionOrder The elution order of the chromatography method of the annotations.
+     */
+    public LipidScoreUnit(DataStore<Annotation> annotations, ElutionOrderModel elutionOrder) {
         this.annotations = annotations;
+        this.elutionOrder = DataSource.createSingleton();
+        this.elutionOrder.set(elutionOrder);
     }
 
     public DataStore<Annotation> getAnnotations() {
         return annotations;
     }
 
+    public SingletonStore<ElutionOrderModel> getElutionOrder() {
+        return elutionOrder;
+    }
+
 }
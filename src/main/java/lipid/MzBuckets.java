@@ -0,0 +1,44 @@
+package lipid;
+
+import java.util.List;
+
+/**
+ * Splits the m/z axis in buckets of constant width in ppm, as wide as the whole tolerance window around an
+ * m/z, so that every m/z within the tolerance of a predicted m/z falls in the bucket of the lower or of the
+ * upper end of the window.
+ */
+public class MzBuckets {
+
+    private final int ppmTolerance;
+    private final double logBucketWidth;
+    private final double windowFraction;
+
+    public MzBuckets(int ppmTolerance) {
+        this.ppmTolerance = ppmTolerance;
+        // one extra ppm covers the rounding of Adduct.calculatePPMIncrement
+        this.windowFraction = (ppmTolerance + 1) / 1_000_000.0;
+        this.logBucketWidth = Math.log((1 + windowFraction) / (1 - windowFraction)) * 1.001;
+    }
+
+    public long bucket(double mz) {
+        return (long) Math.floor(Math.log(mz) / logBucketWidth);
+    }
+
+    public int getPpmTolerance() {
+        return ppmTolerance;
+    }
+
+    /**
+     * @return The hypotheses (one per bucket of the tolerance window) that the {@code other} adduct of the
+     * relation is in the group of the base peak.
+     */
+    public List<AdductHypothesis> hypotheses(PeakFact base, AdductRelation relation) {
+        double predictedMz = relation.predictMz(base.getMz());
+        if (predictedMz <= 0) return List.of();
+        long lowBucket = bucket(predictedMz * (1 - windowFraction));
+        long highBucket = bucket(predictedMz * (1 + windowFraction));
+        AdductHypothesis low = new AdductHypothesis(base.getGroupId(), relation, predictedMz, lowBucket, ppmTolerance);
+        if (lowBucket == highBucket) return List.of(low);
+        return List.of(low, new AdductHypothesis(base.getGroupId(), relation, predictedMz, highBucket, ppmTolerance));
+    }
+}
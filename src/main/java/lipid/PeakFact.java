@@ -0,0 +1,62 @@
+package lipid;
+
+/**
+ * Fact inserted in the {@link AdductDetectionUnit} for every peak of a group. The m/z bucket lets the rules
+ * join peaks with the predicted m/z of an adduct by equality, which the engine indexes, instead of comparing
+ * every pair of peaks.
+ */
+public class PeakFact {
+
+    private final int groupId;
+    private final int index;
+    private final double mz;
+    private final long bucket;
+    private final boolean base;
+    private final IoniationMode ionizationMode;
+
+    /**
+     * @param groupId        The group (annotated signal) the peak belongs to.
+     * @param index          The position of the peak in its group, sorted by m/z.
+     * @param mz             The m/z of the peak.
+     * @param bucket         The m/z bucket of the peak.
+     * @param base           Whether the peak is the annotated signal whose adduct is detected.
+     * @param ionizationMode The ionization mode of the group.
+     */
+    public PeakFact(int groupId, int index, double mz, long bucket, boolean base, IoniationMode ionizationMode) {
+        this.groupId = groupId;
+        this.index = index;
+        this.mz = mz;
+        this.bucket = bucket;
+        this.base = base;
+        this.ionizationMode = ionizationMode;
+    }
+
+    public int getGroupId() {
+        return groupId;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public double getMz() {
+        return mz;
+    }
+
+    public long getBucket() {
+        return bucket;
+    }
+
+    public boolean isBase() {
+        return base;
+    }
+
+    public IoniationMode getIonizationMode() {
+        return ionizationMode;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PeakFact(group=%d, index=%d, mz=%.4f, bucket=%d, base=%b)", groupId, index, mz, bucket, base);
+    }
+}
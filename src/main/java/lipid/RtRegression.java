@@ -0,0 +1,167 @@
+package lipid;
+
+import java.util.Arrays;
+
+/**
+ * Robust straight line fit of the RT against a lipid attribute (carbon count or ECN), that is updated as points
+ * are added.
+ * <p>
+ * The fit starts from the Theil-Sen line, which is not pulled by outliers at the ends of a carbon ladder (up to
+ * 29% of the points can be outliers), and is refined by iteratively reweighted least squares with bisquare
+ * weights, which ignore the points far from the line. A fit of n points costs O(n log n), because of the
+ * medians used as intercept and scale, and a robust fit has no sufficient statistics that could be updated
+ * point by point.
+ * </p>
+ * <p>
+ * Adding a point is therefore O(1), and the fit is recomputed lazily on a geometric schedule: a prediction
+ * refits only when the points have grown by {@value #REFIT_GROWTH} times since the last fit. Streaming n points
+ * and predicting after each one costs O(n log n) in total instead of O(n² log n), at the price of predictions
+ * that ignore up to the last 20% of the points. {@link #refit()} includes them all before the final scores.
+ * </p>
+ */
+public final class RtRegression {
+
+    private static final double BISQUARE_C = 4.685d;
+    private static final double MAD_TO_SIGMA = 1.4826d;
+    private static final int MAX_ITERATIONS = 20;
+    private static final int MAX_SLOPE_POINTS = 64;
+    private static final double CONVERGENCE = 1e-9d;
+    private static final double REFIT_GROWTH = 1.25d;
+
+    private double[] xs = new double[4];
+    private double[] ys = new double[4];
+    private int size;
+
+    private int fittedSize;
+    private int fits;
+    private double slope;
+    private double intercept;
+    private double scale;
+
+    public void add(double x, double y) {
+        if (size == xs.length) {
+            xs = Arrays.copyOf(xs, size * 2);
+            ys = Arrays.copyOf(ys, size * 2);
+        }
+        xs[size] = x;
+        ys[size] = y;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The RT predicted for {@code x}, or {@code NaN} if there are no points.
+     */
+    public double predict(double x) {
+        if (size == 0) return Double.NaN;
+        fitOnSchedule();
+        return slope * x + intercept;
+    }
+
+    public double getSlope() {
+        fitOnSchedule();
+        return slope;
+    }
+
+    public double getIntercept() {
+        fitOnSchedule();
+        return intercept;
+    }
+
+    /**
+     * @return The robust standard deviation of the residuals (1.4826 times their median absolute value).
+     */
+    public double getScale() {
+        fitOnSchedule();
+        return scale;
+    }
+
+    /**
+     * Fits the line to every point added so far, if any was added since the last fit.
+     */
+    public void refit() {
+        if (size != fittedSize) fit();
+    }
+
+    /**
+     * @return The number of fits computed so far.
+     */
+    int getFitCount() {
+        return fits;
+    }
+
+    private void fitOnSchedule() {
+        if (size > 0 && size >= fittedSize * REFIT_GROWTH) fit();
+    }
+
+    private void fit() {
+        double[] work = new double[size];
+        theilSen(work);
+        scale = residualScale(work);
+
+        for (int iteration = 0; iteration < MAX_ITERATIONS && scale > 0; iteration++) {
+            double w = 0d;
+            double wx = 0d;
+            double wy = 0d;
+            double wxx = 0d;
+            double wxy = 0d;
+            for (int i = 0; i < size; i++) {
+                double u = (ys[i] - slope * xs[i] - intercept) / (BISQUARE_C * scale);
+                if (Math.abs(u) >= 1) continue;
+                double weight = (1 - u * u) * (1 - u * u);
+                w += weight;
+                wx += weight * xs[i];
+                wy += weight * ys[i];
+                wxx += weight * xs[i] * xs[i];
+                wxy += weight * xs[i] * ys[i];
+            }
+            if (w == 0) break;
+            double wsxx = wxx - wx * wx / w;
+            double newSlope = wsxx > 1e-12 ? (wxy - wx * wy / w) / wsxx : slope;
+            double newIntercept = (wy - newSlope * wx) / w;
+            boolean converged = Math.abs(newSlope - slope) < CONVERGENCE && Math.abs(newIntercept - intercept) < CONVERGENCE;
+            slope = newSlope;
+            intercept = newIntercept;
+            scale = residualScale(work);
+            if (converged) break;
+        }
+        fittedSize = size;
+        fits++;
+    }
+
+    /**
+     * Sets the slope to the Theil-Sen estimate (the median of the slopes between pairs of points) and the
+     * intercept to the median of the residuals of that slope. Large groups are estimated from at most
+     * {@value #MAX_SLOPE_POINTS} evenly spaced points, so the cost of this step does not grow with the group.
+     */
+    private void theilSen(double[] work) {
+        int step = (size + MAX_SLOPE_POINTS - 1) / MAX_SLOPE_POINTS;
+        double[] slopes = new double[MAX_SLOPE_POINTS * (MAX_SLOPE_POINTS - 1) / 2];
+        int count = 0;
+        for (int i = 0; i < size; i += step) {
+            for (int j = i + step; j < size; j += step) {
+                if (xs[i] != xs[j]) slopes[count++] = (ys[j] - ys[i]) / (xs[j] - xs[i]);
+            }
+        }
+        slope = count == 0 ? 0d : median(slopes, count);
+        for (int i = 0; i < size; i++) {
+            work[i] = ys[i] - slope * xs[i];
+        }
+        intercept = median(work, size);
+    }
+
+    private double residualScale(double[] work) {
+        for (int i = 0; i < size; i++) {
+            work[i] = Math.abs(ys[i] - slope * xs[i] - intercept);
+        }
+        return MAD_TO_SIGMA * median(work, size);
+    }
+
+    private static double median(double[] values, int length) {
+        Arrays.sort(values, 0, length);
+        return length % 2 == 1 ? values[length / 2] : (values[length / 2 - 1] + values[length / 2]) / 2;
+    }
+}
@@ -0,0 +1,143 @@
+package lipid;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Scores annotations by how far their RT is from the RT predicted for their lipid, as an alternative to the
+ * pairwise elution order rules of {@link LipidScoreUnit}.
+ * <p>
+ * Lipids of the same class and double bonds elute in a straight line against their carbon count, so a
+ * {@link RtRegression} is fitted for every (class, double bonds) group. Groups with too few annotations to be
+ * fitted on their own are predicted with the regression of their class against the equivalent carbon number
+ * (ECN = carbons - 2 * double bonds), which pools all the double bonds of the class. Both regressions are
+ * updated as annotations are added, so annotations can be streamed in and scored at any point; streaming and
+ * scoring n annotations costs O(n log n) because the regressions are refitted on a geometric schedule. Call
+ * {@link #refit()} before the final scores to fit them with every annotation.
+ * </p>
+ * <p>
+ * This class is not thread safe: use one scorer per sample.
+ * </p>
+ */
+public class RtRegressionScorer {
+
+    private final int minPoints;
+    private final double outlierThreshold;
+    private final double minResidualScale;
+    private final Map<LipidType, Map<Integer, RtRegression>> byDoubleBonds = new EnumMap<>(LipidType.class);
+    private final Map<LipidType, RtRegression> byEcn = new EnumMap<>(LipidType.class);
+
+    public RtRegressionScorer() {
+        this(3, 3d, 0.05d);
+    }
+
+    /**
+     * @param minPoints        The minimum number of annotations needed to fit a regression.
+     * @param outlierThreshold The number of residual standard deviations beyond which an annotation is an outlier.
+     * @param minResidualScale The minimum residual standard deviation, in minutes, so that groups that fit
+     *                         perfectly do not turn rounding errors into outliers.
+     */
+    public RtRegressionScorer(int minPoints, double outlierThreshold, double minResidualScale) {
+        if (minPoints < 2) {
+            throw new IllegalArgumentException("At least two points are needed to fit a line");
+        }
+        this.minPoints = minPoints;
+        this.outlierThreshold = outlierThreshold;
+        this.minResidualScale = minResidualScale;
+        for (LipidType type : LipidType.values()) {
+            byDoubleBonds.put(type, new HashMap<>());
+            byEcn.put(type, new RtRegression());
+        }
+    }
+
+    /**
+     * Adds the RT of the annotation to the regressions of its lipid.
+     */
+    public void add(Annotation annotation) {
+        Lipid lipid = annotation.getLipid();
+        byDoubleBonds.get(lipid.getLipidType()).computeIfAbsent(lipid.getDoubleBondsCount(), db -> new RtRegression())
+                .add(lipid.getCarbonCount(), annotation.getRtMin());
+        byEcn.get(lipid.getLipidType()).add(ecn(lipid), annotation.getRtMin());
+    }
+
+    /**
+     * @return The RT predicted for the lipid of the annotation, or {@code NaN} if neither its group nor its
+     * class have enough annotations.
+     */
+    public double predict(Annotation annotation) {
+        RtRegression regression = regression(annotation.getLipid());
+        return regression == null ? Double.NaN : regression.predict(x(annotation.getLipid(), regression));
+    }
+
+    /**
+     * @return The residual of the annotation in residual standard deviations, or {@code NaN} if its RT cannot
+     * be predicted.
+     */
+    public double standardizedResidual(Annotation annotation) {
+        Lipid lipid = annotation.getLipid();
+        RtRegression regression = regression(lipid);
+        if (regression == null) return Double.NaN;
+        double residual = annotation.getRtMin() - regression.predict(x(lipid, regression));
+        return residual / Math.max(regression.getScale(), minResidualScale);
+    }
+
+    /**
+     * Scores the annotation with +1 when its RT is within the outlier threshold of the prediction and -1 when
+     * it is not. The annotation is not scored when its RT cannot be predicted.
+     *
+     * @return The standardized residual computed by {@link #standardizedResidual(Annotation)}.
+     */
+    public double score(Annotation annotation) {
+        double residual = standardizedResidual(annotation);
+        if (!Double.isNaN(residual)) {
+            annotation.addScore(Math.abs(residual) <= outlierThreshold ? 1 : -1);
+        }
+        return residual;
+    }
+
+    /**
+     * Adds all the annotations and then scores each of them against the regressions fitted with all of them.
+     */
+    public void scoreAll(Collection<Annotation> annotations) {
+        for (Annotation annotation : annotations) {
+            add(annotation);
+        }
+        refit();
+        for (Annotation annotation : annotations) {
+            score(annotation);
+        }
+    }
+
+    /**
+     * Refits every regression with all the annotations added so far. Between refits, the regressions are only
+     * refitted when their points have grown by a fixed factor (see {@link RtRegression}), so the predictions
+     * made while annotations are streamed in may lag behind the latest ones.
+     */
+    public void refit() {
+        for (Map<Integer, RtRegression> groups : byDoubleBonds.values()) {
+            for (RtRegression regression : groups.values()) {
+                regression.refit();
+            }
+        }
+        for (RtRegression regression : byEcn.values()) {
+            regression.refit();
+        }
+    }
+
+    private RtRegression regression(Lipid lipid) {
+        RtRegression group = byDoubleBonds.get(lipid.getLipidType()).get(lipid.getDoubleBondsCount());
+        if (group != null && group.size() >= minPoints) return group;
+        RtRegression pooled = byEcn.get(lipid.getLipidType());
+        return pooled.size() >= minPoints ? pooled : null;
+    }
+
+    private double x(Lipid lipid, RtRegression regression) {
+        return regression == byEcn.get(lipid.getLipidType()) ? ecn(lipid) : lipid.getCarbonCount();
+    }
+
+    private static int ecn(Lipid lipid) {
+        return lipid.getCarbonCount() - 2 * lipid.getDoubleBondsCount();
+    }
+}
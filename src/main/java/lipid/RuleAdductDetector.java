@@ -0,0 +1,113 @@
+package lipid;
+
+import org.drools.ruleunits.api.RuleUnitInstance;
+import org.drools.ruleunits.api.RuleUnitProvider;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Detects the adducts of a whole run with the rules of the {@link AdductDetectionUnit}.
+ * <p>
+ * The groups of the run are split in {@code partitions} consecutive chunks and every chunk is fired in a rule
+ * session of its own, in parallel. With one partition the whole run is processed in a single session.
+ * </p>
+ * <p>
+ * Unlike {@link Annotation#detectAdduct(double, IoniationMode, SignalGroup)}, which only compares the base
+ * peak with the lowest m/z peak of its group, the rules compare it with every peak of the group. Both give the
+ * same adduct whenever the lowest m/z peak confirms one, but the rules still find the adduct when that peak is
+ * noise.
+ * </p>
+ */
+public class RuleAdductDetector {
+
+    private final int ppmTolerance;
+    private final int partitions;
+
+    public RuleAdductDetector() {
+        this(10, Runtime.getRuntime().availableProcessors());
+    }
+
+    public RuleAdductDetector(int ppmTolerance, int partitions) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("At least one partition is needed");
+        }
+        this.ppmTolerance = ppmTolerance;
+        this.partitions = partitions;
+    }
+
+    /**
+     * @return The detected adduct of every annotation, in the same order, or {@code null} where none was detected.
+     */
+    public String[] detect(List<Annotation> annotations) {
+        double[] mzs = new double[annotations.size()];
+        IoniationMode[] modes = new IoniationMode[annotations.size()];
+        SignalGroup[] groups = new SignalGroup[annotations.size()];
+        for (int i = 0; i < mzs.length; i++) {
+            Annotation annotation = annotations.get(i);
+            mzs[i] = annotation.getMz();
+            modes[i] = annotation.getIonizationMode();
+            groups[i] = annotation.getSignals();
+        }
+        return detect(mzs, modes, groups);
+    }
+
+    /**
+     * @param mzs    The m/z of the signal whose adduct is detected, one per group.
+     * @param modes  The ionization mode of every group.
+     * @param groups The peaks grouped with every signal.
+     * @return The detected adduct of every signal, or {@code null} where none was detected.
+     */
+    public String[] detect(double[] mzs, IoniationMode[] modes, SignalGroup[] groups) {
+        String[] adducts = new String[mzs.length];
+        int chunk = Math.max(1, (mzs.length + partitions - 1) / partitions);
+        IntStream.range(0, (mzs.length + chunk - 1) / chunk).parallel().forEach(partition -> {
+            int from = partition * chunk;
+            int to = Math.min(mzs.length, from + chunk);
+            String[] detected = detectPartition(Arrays.copyOfRange(mzs, from, to), Arrays.copyOfRange(modes, from, to),
+                    Arrays.copyOfRange(groups, from, to));
+            System.arraycopy(detected, 0, adducts, from, detected.length);
+        });
+        return adducts;
+    }
+
+    private String[] detectPartition(double[] mzs, IoniationMode[] modes, SignalGroup[] groups) {
+        MzBuckets buckets = new MzBuckets(ppmTolerance);
+        AdductDetections detections = new AdductDetections(mzs.length);
+        AdductDetectionUnit unit = new AdductDetectionUnit(buckets, detections);
+        RuleUnitInstance<AdductDetectionUnit> instance = RuleUnitProvider.get().createRuleUnitInstance(unit);
+        try {
+            boolean[] modesPresent = new boolean[IoniationMode.values().length];
+            for (int groupId = 0; groupId < mzs.length; groupId++) {
+                SignalGroup group = groups[groupId];
+                // same base peak as the imperative detection: the first one close to the signal m/z
+                int baseIndex = -1;
+                for (int i = 0; i < group.size() && baseIndex < 0; i++) {
+                    if (Math.abs(group.getMz(i) - mzs[groupId]) < 0.01) baseIndex = i;
+                }
+                if (baseIndex < 0 || group.size() < 2) continue;
+                modesPresent[modes[groupId].ordinal()] = true;
+                for (int i = 0; i < group.size(); i++) {
+                    unit.getPeaks().add(new PeakFact(groupId, i, group.getMz(i), buckets.bucket(group.getMz(i)),
+                            i == baseIndex, modes[groupId]));
+                }
+            }
+            for (IoniationMode mode : IoniationMode.values()) {
+                if (!modesPresent[mode.ordinal()]) continue;
+                for (AdductRelation relation : AdductRelation.of(mode)) {
+                    unit.getRelations().add(relation);
+                }
+            }
+            instance.fire();
+        } finally {
+            instance.close();
+        }
+
+        String[] adducts = new String[mzs.length];
+        for (int groupId = 0; groupId < mzs.length; groupId++) {
+            adducts[groupId] = detections.getAdduct(groupId);
+        }
+        return adducts;
+    }
+}
@@ -0,0 +1,90 @@
+package lipid;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Immutable group of peaks stored as two primitive arrays sorted by m/z. A group is built once per set of
+ * co-eluting peaks and shared by every candidate annotation of those peaks, instead of each annotation
+ * keeping its own copy of {@link Peak} objects.
+ */
+public final class SignalGroup {
+
+    public static final SignalGroup EMPTY = new SignalGroup(new double[0], new double[0]);
+
+    private final double[] mzs;
+    private final double[] intensities;
+    // built on the first call to toPeaks(), for the callers that still need Peak objects
+    private volatile Set<Peak> peaks;
+
+    private SignalGroup(double[] mzs, double[] intensities) {
+        this.mzs = mzs;
+        this.intensities = intensities;
+    }
+
+    /**
+     * Builds a group from the given peaks. As in a {@code TreeSet<Peak>}, peaks with the same m/z are kept once.
+     */
+    public static SignalGroup of(Collection<Peak> peaks) {
+        if (peaks == null || peaks.isEmpty()) return EMPTY;
+        Peak[] sorted = new TreeSet<>(peaks).toArray(new Peak[0]);
+        double[] mzs = new double[sorted.length];
+        double[] intensities = new double[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            mzs[i] = sorted[i].getMz();
+            intensities[i] = sorted[i].getIntensity();
+        }
+        return new SignalGroup(mzs, intensities);
+    }
+
+    public int size() {
+        return mzs.length;
+    }
+
+    public boolean isEmpty() {
+        return mzs.length == 0;
+    }
+
+    public double getMz(int index) {
+        return mzs[index];
+    }
+
+    public double getIntensity(int index) {
+        return intensities[index];
+    }
+
+    /**
+     * @return The index of the lowest m/z peak within {@code maxDelta} of {@code mz}, or -1 if there is none.
+     */
+    public int indexOf(double mz, double maxDelta) {
+        int index = Arrays.binarySearch(mzs, mz - maxDelta);
+        if (index < 0) index = -index - 1;
+        return index < mzs.length && mzs[index] <= mz + maxDelta ? index : -1;
+    }
+
+    /**
+     * @return An unmodifiable sorted set with the peaks of the group. It is built on the first call and the
+     * same set is returned afterwards, so every candidate annotation sharing the group shares it too.
+     */
+    public Set<Peak> toPeaks() {
+        Set<Peak> result = peaks;
+        if (result == null) {
+            TreeSet<Peak> sorted = new TreeSet<>();
+            for (int i = 0; i < mzs.length; i++) {
+                sorted.add(new Peak(mzs[i], intensities[i]));
+            }
+            // racing threads build equal sets, any of them can be kept
+            result = Collections.unmodifiableSortedSet(sorted);
+            peaks = result;
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return toPeaks().toString();
+    }
+}
@@ -1,39 +1,59 @@
 package main;
 
-import lipid.*;
-import org.drools.ruleunits.api.RuleUnitInstance;
-import org.drools.ruleunits.api.RuleUnitProvider;
-
-import static org.drools.model.codegen.execmodel.generator.declaredtype.generator.GeneratedClassDeclaration.LOG;
+import lipid.IoniationMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pipeline.AnnotationPipeline;
+import pipeline.LipidDatabase;
+import pipeline.PipelineConfig;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 
 public class Main {
 
-    public static void main(String[] args) {
-
-        LipidScoreUnit lipidScoreUnit = new LipidScoreUnit();
-
-        RuleUnitInstance<LipidScoreUnit> instance = RuleUnitProvider.get().createRuleUnitInstance(lipidScoreUnit);
-
-        Lipid lipid1 = new Lipid(1, "TG 54:3", "C57H104O6", LipidType.TG, 54, 3); // MZ of [M+H]+ = 885.79057
-        Lipid lipid2 = new Lipid(2, "TG 52:3", "C55H100O6", LipidType.TG, 52, 3); // MZ of [M+H]+ = 857.75927
-        Lipid lipid3 = new Lipid(3, "TG 56:3", "C59H108O6", LipidType.TG, 56, 3); // MZ of [M+H]+ = 913.82187
-
-        Annotation annotation1 = new Annotation(lipid1, 885.79056, 10E6, 10d, IoniationMode.POSITIVE);
-        Annotation annotation2 = new Annotation(lipid2, 857.7593, 10E7, 9d, IoniationMode.POSITIVE);
-        Annotation annotation3 = new Annotation(lipid3, 913.822, 10E5, 11d, IoniationMode.POSITIVE);
+    private static final Logger LOG = LoggerFactory.getLogger(Main.class);
+
+    /**
+     * Annotates a batch of samples.
+     * <p>
+     * Usage: {@code Main <database file> <output dir> <POSITIVE|NEGATIVE> <sample file>...}
+     * </p>
+     * <p>
+     * The elution order of the chromatography method is chosen with {@code -Dlipid.elution.method=<method>}.
+     * </p>
+     * <p>
+     * The RTs of the samples are aligned onto a reference sample first, which reads every sample file twice:
+     * once for the landmarks of the alignment and once to annotate it.
+     * </p>
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+
+        if (args.length < 4) {
+            System.err.println("Usage: Main <database file> <output dir> <POSITIVE|NEGATIVE> <sample file>...");
+            System.exit(1);
+        }
 
-        LOG.info("Insert data");
-        try {
-            // TODO INTRODUCE THE CODE IF DESIRED TO INSERT FACTS AND TRIGGER RULES
-            lipidScoreUnit.getAnnotations().add(annotation1);
-            lipidScoreUnit.getAnnotations().add(annotation2);
-            lipidScoreUnit.getAnnotations().add(annotation3);
-            LOG.info("Run query. Rules are also fired");
-            instance.fire();
-            // TODO INTRODUCE THE QUERIES IF DESIRED
+        LipidDatabase database = LipidDatabase.read(Path.of(args[0]));
+        Path outputDir = Files.createDirectories(Path.of(args[1]));
+        PipelineConfig config = new PipelineConfig();
+        config.setIonizationMode(IoniationMode.valueOf(args[2]));
+        config.setRtAlignment(true);
+        List<Path> sampleFiles = new ArrayList<>();
+        for (int i = 3; i < args.length; i++) {
+            sampleFiles.add(Path.of(args[i]));
+        }
 
-        } finally {
-            instance.close();
+        LOG.info("Annotating {} samples against {} lipids", sampleFiles.size(), database.size());
+        AnnotationPipeline pipeline = new AnnotationPipeline(config, database);
+        List<String> completed = pipeline.run(sampleFiles, outputDir);
+        LOG.info("{} samples annotated, {} failed {}", completed.size(), pipeline.getFailedSamples().size(),
+                pipeline.getFailedSamples());
+        if (!pipeline.getFailedSamples().isEmpty()) {
+            System.exit(2);
         }
     }
 }
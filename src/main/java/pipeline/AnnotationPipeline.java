@@ -0,0 +1,124 @@
+package pipeline;
+
+import alignment.RtCorrection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole-run annotation pipeline: ingest features -> group peaks -> detect adducts -> database matching
+ * -> isotope scoring -> top-K candidate pruning -> elution order scoring -> write results.
+ * <p>
+ * Samples are streamed through the stages one by one. The stages are connected by bounded queues, so at
+ * any moment only the samples being processed or waiting in a queue are held in memory, and each stage
+ * works on as many samples at the same time as its configured parallelism.
+ * </p>
+ */
+public class AnnotationPipeline {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AnnotationPipeline.class);
+
+    /**
+     * Marker put in the queues after the last sample.
+     */
+    static final Sample END = new Sample("<end>", null, null);
+
+    private final PipelineConfig config;
+    private final SampleProcessor processor;
+    private final List<String> failedSamples = Collections.synchronizedList(new ArrayList<>());
+
+    public AnnotationPipeline(PipelineConfig config, LipidDatabase database) {
+        this.config = config;
+        this.processor = new SampleProcessor(config, database);
+    }
+
+    /**
+     * @param rtCorrections The RT correction of each sample, by sample name, applied when the sample is read.
+     *                      They are replaced by the fitted ones when {@link PipelineConfig#isRtAlignment()} is
+     *                      enabled.
+     */
+    public void setRtCorrections(Map<String, RtCorrection> rtCorrections) {
+        processor.setRtCorrections(rtCorrections);
+    }
+
+    /**
+     * Runs every sample file through the pipeline and writes one result file per sample.
+     *
+     * @param sampleFiles The feature files of the samples.
+     * @param outputDir   The directory where the results are written.
+     * @return The names of the samples whose results were written.
+     * @throws InterruptedException if the calling thread is interrupted while waiting for the pipeline.
+     */
+    public List<String> run(List<Path> sampleFiles, Path outputDir) throws InterruptedException {
+        processor.alignSamples(sampleFiles);
+        List<Stage> stages = List.of(
+                new Stage("ingest", config.getIngestParallelism(), processor::ingest),
+                new Stage("group", config.getGroupingParallelism(), processor::groupPeaks),
+                new Stage("detect", config.getDetectionParallelism(), processor::detectAdducts),
+                new Stage("match", config.getMatchingParallelism(), processor::matchDatabase),
+                new Stage("isotope", config.getIsotopeParallelism(), processor::scoreIsotopes),
+                new Stage("prune", config.getPruningParallelism(), processor::pruneCandidates),
+                new Stage("score", config.getScoringParallelism(), processor::scoreElutionOrder),
+                new Stage("write", config.getWritingParallelism(), sample -> processor.writeResults(sample, outputDir)));
+
+        int threads = 1;
+        for (Stage stage : stages) {
+            threads += stage.getParallelism();
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        failedSamples.clear();
+        List<String> completed = new ArrayList<>();
+        try {
+            BlockingQueue<Sample> source = newQueue();
+            BlockingQueue<Sample> input = source;
+            for (Stage stage : stages) {
+                BlockingQueue<Sample> output = newQueue();
+                stage.start(input, output, executor, failedSamples);
+                input = output;
+            }
+            executor.execute(() -> feed(sampleFiles, source));
+
+            Sample sample;
+            while ((sample = input.take()) != END) {
+                completed.add(sample.getName());
+                LOG.info("Sample {} written ({}/{})", sample.getName(), completed.size(), sampleFiles.size());
+            }
+        } finally {
+            executor.shutdownNow();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        return completed;
+    }
+
+    /**
+     * @return The names of the samples that failed in the last run.
+     */
+    public List<String> getFailedSamples() {
+        return List.copyOf(failedSamples);
+    }
+
+    private void feed(List<Path> sampleFiles, BlockingQueue<Sample> source) {
+        try {
+            for (Path file : sampleFiles) {
+                source.put(new Sample(FeatureReader.sampleName(file), file, config.getIonizationMode()));
+            }
+            source.put(END);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private BlockingQueue<Sample> newQueue() {
+        return new ArrayBlockingQueue<>(config.getQueueCapacity());
+    }
+}
@@ -0,0 +1,139 @@
+package pipeline;
+
+import adduct.Adduct;
+import lipid.Annotation;
+import lipid.IsotopePatternScorer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Keeps only the best K candidate annotations of every feature, so that the size of the rule session (and
+ * the number of pairwise rule joins) does not depend on how ambiguous the database matches are.
+ * <p>
+ * Candidates are ranked by ppm error of the adduct they were matched with, then by the plausibility of that
+ * adduct (the order of the adduct registry, where the most common adducts come first) and then by isotope fit.
+ * Candidates without a matched adduct are ranked by their detected adduct, or by the adduct with the lowest
+ * ppm error if none was detected. Each feature keeps a bounded heap of K candidates, so pruning is linear in the
+ * number of candidates.
+ * </p>
+ */
+public class CandidatePruner {
+
+    private static final double UNKNOWN_ISOTOPE_FIT = 0.5d;
+
+    private static final Comparator<Rank> BEST_FIRST = Comparator.comparingInt((Rank rank) -> rank.ppmError)
+            .thenComparingInt(rank -> rank.adductRank)
+            .thenComparing(rank -> rank.isotopeFit, Comparator.reverseOrder());
+
+    private final int maxCandidatesPerFeature;
+    private final IsotopePatternScorer isotopeScorer;
+    private final LipidDatabase database;
+
+    /**
+     * @param database The database the candidates were matched against, which provides their masses.
+     */
+    public CandidatePruner(int maxCandidatesPerFeature, IsotopePatternScorer isotopeScorer, LipidDatabase database) {
+        if (maxCandidatesPerFeature < 1) {
+            throw new IllegalArgumentException("At least one candidate per feature must be kept");
+        }
+        this.maxCandidatesPerFeature = maxCandidatesPerFeature;
+        this.isotopeScorer = isotopeScorer;
+        this.database = database;
+    }
+
+    /**
+     * @param annotations The candidate annotations of a sample. Candidates of the same feature share m/z and RT.
+     * @param adductMap   The adducts of the ionization mode of the sample, most common first.
+     * @return The surviving candidates, in their original order.
+     */
+    public List<Annotation> prune(List<Annotation> annotations, Map<String, Double> adductMap) {
+        Map<FeatureKey, PriorityQueue<Rank>> heaps = new LinkedHashMap<>();
+        for (Annotation annotation : annotations) {
+            PriorityQueue<Rank> heap = heaps.computeIfAbsent(new FeatureKey(annotation.getMz(), annotation.getRtMin()),
+                    key -> new PriorityQueue<>(maxCandidatesPerFeature + 1, BEST_FIRST.reversed()));
+            heap.add(rank(annotation, adductMap));
+            if (heap.size() > maxCandidatesPerFeature) {
+                heap.poll(); // drops the worst candidate
+            }
+        }
+
+        Set<Annotation> survivors = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (PriorityQueue<Rank> heap : heaps.values()) {
+            for (Rank rank : heap) {
+                survivors.add(rank.annotation);
+            }
+        }
+        List<Annotation> pruned = new ArrayList<>(survivors.size());
+        for (Annotation annotation : annotations) {
+            if (survivors.contains(annotation)) pruned.add(annotation);
+        }
+        return pruned;
+    }
+
+    private Rank rank(Annotation annotation, Map<String, Double> adductMap) {
+        double mass = database.getMonoisotopicMass(annotation.getLipid());
+        String knownAdduct = annotation.getMatchedAdduct();
+        if (knownAdduct == null) knownAdduct = annotation.getAdduct();
+        int bestPpm = Integer.MAX_VALUE;
+        int bestAdductRank = Integer.MAX_VALUE;
+        int adductIndex = 0;
+        for (Map.Entry<String, Double> adduct : adductMap.entrySet()) {
+            adductIndex++;
+            if (knownAdduct != null && !knownAdduct.equals(adduct.getKey())) continue;
+            int ppm = Adduct.calculatePPMIncrement(annotation.getMz(), Adduct.getMZFromMonoisotopicMass(mass, adduct));
+            if (ppm < bestPpm) {
+                bestPpm = ppm;
+                bestAdductRank = adductIndex;
+            }
+        }
+        // computed once by the isotope stage, only candidates that skipped it are fitted here
+        double isotopeFit = annotation.hasIsotopeFit() ? annotation.getIsotopeFit() : isotopeScorer.fit(annotation);
+        return new Rank(annotation, bestPpm, bestAdductRank, Double.isNaN(isotopeFit) ? UNKNOWN_ISOTOPE_FIT : isotopeFit);
+    }
+
+    private static class FeatureKey {
+        private final double mz;
+        private final double rtMin;
+
+        private FeatureKey(double mz, double rtMin) {
+            this.mz = mz;
+            this.rtMin = rtMin;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof FeatureKey)) return false;
+            FeatureKey that = (FeatureKey) o;
+            return Double.compare(that.mz, mz) == 0 && Double.compare(that.rtMin, rtMin) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(mz, rtMin);
+        }
+    }
+
+    private static class Rank {
+        private final Annotation annotation;
+        private final int ppmError;
+        private final int adductRank;
+        private final double isotopeFit;
+
+        private Rank(Annotation annotation, int ppmError, int adductRank, double isotopeFit) {
+            this.annotation = annotation;
+            this.ppmError = ppmError;
+            this.adductRank = adductRank;
+            this.isotopeFit = isotopeFit;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package pipeline;
+
+/**
+ * Class to represent a single LC-MS feature (a chromatographic peak) of a sample
+ */
+public class Feature {
+
+    private final double mz;
+    private final double intensity;
+    private final double rtMin;
+
+    public Feature(double mz, double intensity, double rtMin) {
+        this.mz = mz;
+        this.intensity = intensity;
+        this.rtMin = rtMin;
+    }
+
+    public double getMz() {
+        return mz;
+    }
+
+    public double getIntensity() {
+        return intensity;
+    }
+
+    public double getRtMin() {
+        return rtMin;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Feature(mz=%.4f, intensity=%.2f, rtMin=%.3f)", mz, intensity, rtMin);
+    }
+}
@@ -0,0 +1,62 @@
+package pipeline;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the features of a sample from a comma or tab separated file with the columns
+ * {@code mz, rtMin, intensity}. Empty lines, lines starting with '#' and a header line before the first record are skipped.
+ */
+public class FeatureReader {
+
+    private FeatureReader() {
+    }
+
+    public static List<Feature> read(Path file) throws IOException {
+        List<Feature> features = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            boolean firstRecord = true;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] fields = line.split("[,\t]");
+                if (fields[0].trim().isEmpty()) {
+                    throw new IOException(file + ":" + lineNumber + ": empty mz field");
+                }
+                // only the first line with content can be the header
+                boolean header = firstRecord && !Character.isDigit(fields[0].trim().charAt(0));
+                firstRecord = false;
+                if (header) continue;
+                if (fields.length < 3) {
+                    throw new IOException(file + ":" + lineNumber + ": expected mz, rtMin and intensity");
+                }
+                try {
+                    features.add(new Feature(Double.parseDouble(fields[0].trim()),
+                            Double.parseDouble(fields[2].trim()),
+                            Double.parseDouble(fields[1].trim())));
+                } catch (NumberFormatException e) {
+                    throw new IOException(file + ":" + lineNumber + ": " + e.getMessage(), e);
+                }
+            }
+        }
+        return features;
+    }
+
+    /**
+     * @param file The feature file of a sample.
+     * @return The sample name, which is the file name without its extension.
+     */
+    public static String sampleName(Path file) {
+        String fileName = file.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        return dot > 0 ? fileName.substring(0, dot) : fileName;
+    }
+}
@@ -0,0 +1,131 @@
+package pipeline;
+
+import lipid.Formula;
+import lipid.Lipid;
+import lipid.LipidType;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory lipid database sorted by monoisotopic mass, so that candidates for a mass are found by
+ * binary search instead of scanning every compound.
+ */
+public class LipidDatabase {
+
+    private final Lipid[] lipids;
+    private final double[] masses;
+    // position of every lipid in the arrays, by lipid
+    private final Map<Lipid, Integer> positions;
+
+    public LipidDatabase(Collection<Lipid> lipids) {
+        Lipid[] input = lipids.toArray(new Lipid[0]);
+        double[] inputMasses = new double[input.length];
+        Integer[] order = new Integer[input.length];
+        for (int i = 0; i < input.length; i++) {
+            inputMasses[i] = Formula.parse(input[i].getFormula()).getMonoisotopicMass();
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingDouble(i -> inputMasses[i]));
+        this.lipids = new Lipid[input.length];
+        this.masses = new double[input.length];
+        for (int i = 0; i < order.length; i++) {
+            this.lipids[i] = input[order[i]];
+            this.masses[i] = inputMasses[order[i]];
+        }
+        this.positions = new HashMap<>(2 * input.length);
+        for (int i = 0; i < this.lipids.length; i++) {
+            this.positions.put(this.lipids[i], i);
+        }
+    }
+
+    /**
+     * Loads the database from a comma or tab separated file with the columns
+     * {@code compoundId, name, formula, lipidType, carbonCount, doubleBondsCount}.
+     * Empty lines, lines starting with '#' and a header line before the first record are skipped.
+     */
+    public static LipidDatabase read(Path file) throws IOException {
+        List<Lipid> lipids = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            boolean firstRecord = true;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] fields = line.split("[,\t]");
+                if (fields[0].trim().isEmpty()) {
+                    throw new IOException(file + ":" + lineNumber + ": empty compoundId field");
+                }
+                // only the first line with content can be the header
+                boolean header = firstRecord && !Character.isDigit(fields[0].trim().charAt(0));
+                firstRecord = false;
+                if (header) continue;
+                if (fields.length < 6) {
+                    throw new IOException(file + ":" + lineNumber + ": expected 6 columns");
+                }
+                try {
+                    lipids.add(new Lipid(Integer.parseInt(fields[0].trim()), fields[1].trim(), fields[2].trim(),
+                            LipidType.valueOf(fields[3].trim()), Integer.parseInt(fields[4].trim()),
+                            Integer.parseInt(fields[5].trim())));
+                } catch (IllegalArgumentException e) {
+                    throw new IOException(file + ":" + lineNumber + ": " + e.getMessage(), e);
+                }
+            }
+        }
+        return new LipidDatabase(lipids);
+    }
+
+    /**
+     * @param monoisotopicMass The neutral mass to look up.
+     * @param ppmTolerance     The tolerance in ppm.
+     * @return The lipids whose monoisotopic mass is within the tolerance, ordered by mass.
+     */
+    public List<Lipid> findByMass(double monoisotopicMass, int ppmTolerance) {
+        double delta = monoisotopicMass * ppmTolerance / 1_000_000.0;
+        int from = lowerBound(monoisotopicMass - delta);
+        List<Lipid> candidates = new ArrayList<>();
+        for (int i = from; i < masses.length && masses[i] <= monoisotopicMass + delta; i++) {
+            candidates.add(lipids[i]);
+        }
+        return candidates;
+    }
+
+    /**
+     * @return The monoisotopic mass of the lipid, computed once when the database was built.
+     * @throws IllegalArgumentException If the lipid is not in the database.
+     */
+    public double getMonoisotopicMass(Lipid lipid) {
+        Integer position = positions.get(lipid);
+        if (position == null) {
+            throw new IllegalArgumentException("Lipid " + lipid.getCompoundId() + " is not in the database");
+        }
+        return masses[position];
+    }
+
+    public int size() {
+        return lipids.length;
+    }
+
+    private int lowerBound(double mass) {
+        int low = 0;
+        int high = masses.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (masses[mid] < mass) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+}
@@ -0,0 +1,52 @@
+package pipeline;
+
+import lipid.Peak;
+import lipid.SignalGroup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Class to represent a group of co-eluting features that are assumed to come from the same compound
+ * (different adducts of it). The adduct of each feature is filled in by the adduct detection stage.
+ */
+public class PeakGroup {
+
+    private final List<Feature> features;
+    private final SignalGroup signals;
+    private final List<String> adducts;
+
+    public PeakGroup(List<Feature> features) {
+        this.features = Collections.unmodifiableList(new ArrayList<>(features));
+        List<Peak> peaks = new ArrayList<>(features.size());
+        for (Feature feature : features) {
+            peaks.add(new Peak(feature.getMz(), feature.getIntensity()));
+        }
+        this.signals = SignalGroup.of(peaks);
+        this.adducts = new ArrayList<>(Collections.nCopies(features.size(), null));
+    }
+
+    public List<Feature> getFeatures() {
+        return features;
+    }
+
+    /**
+     * @return The peaks of the group, shared by every annotation built from it.
+     */
+    public SignalGroup getSignals() {
+        return signals;
+    }
+
+    /**
+     * @param index The index of the feature in {@link #getFeatures()}.
+     * @return The adduct detected for the feature, or {@code null} if none was detected.
+     */
+    public String getAdduct(int index) {
+        return adducts.get(index);
+    }
+
+    public void setAdduct(int index, String adduct) {
+        adducts.set(index, adduct);
+    }
+}
@@ -0,0 +1,304 @@
+package pipeline;
+
+import lipid.ElutionOrderModel;
+import lipid.IoniationMode;
+import lipid.IsotopePatternScorer;
+
+/**
+ * Settings of the annotation pipeline. The parallelism of each stage is the number of samples that the
+ * stage processes at the same time, and the queue capacity is the number of samples that can wait
+ * between two stages before the upstream stage blocks.
+ */
+public class PipelineConfig {
+
+    /**
+     * Implementation used to detect the adducts of the peak groups.
+     */
+    public enum AdductDetection {
+        /** The loops of {@link lipid.Annotation#detectAdduct}, one group at a time. */
+        IMPERATIVE,
+        /** The rules of {@link lipid.AdductDetectionUnit}, all the groups of a sample in one session. */
+        RULES
+    }
+
+    /**
+     * Implementation used to score the annotations by their RT.
+     */
+    public enum ElutionScoring {
+        /** The pairwise elution order rules of {@link lipid.LipidScoreUnit}. */
+        RULES,
+        /** The residuals of the RT regressions of {@link lipid.RtRegressionScorer}, linear in the annotations. */
+        REGRESSION
+    }
+
+    private static final int CORES = Runtime.getRuntime().availableProcessors();
+
+    private IoniationMode ionizationMode = IoniationMode.POSITIVE;
+    private double rtGroupingTolerance = 0.05d;
+    private int ppmTolerance = 10;
+    private AdductDetection adductDetection = AdductDetection.IMPERATIVE;
+    private int adductDetectionPartitions = CORES;
+    private ElutionOrderModel elutionOrder = ElutionOrderModel.getDefault();
+    private ElutionScoring elutionScoring = ElutionScoring.RULES;
+    private boolean rtAlignment = false;
+    private double alignmentRtTolerance = 1.0d;
+    private double alignmentRtBucketWidth = 0.5d;
+    private boolean isotopeFiltering = true;
+    private double isotopeFitThreshold = IsotopePatternScorer.DEFAULT_ACCEPTANCE_THRESHOLD;
+    private int maxCandidatesPerFeature = 3;
+    private int queueCapacity = 2;
+    private int ingestParallelism = 2;
+    private int groupingParallelism = Math.max(1, CORES / 4);
+    private int detectionParallelism = Math.max(1, CORES / 2);
+    private int matchingParallelism = Math.max(1, CORES / 2);
+    private int isotopeParallelism = Math.max(1, CORES / 2);
+    private int pruningParallelism = Math.max(1, CORES / 4);
+    private int scoringParallelism = CORES;
+    private int writingParallelism = 1;
+    private int maxConcurrentSessions = CORES;
+    private int maxSamplesInFlight = 2 * CORES;
+
+    public IoniationMode getIonizationMode() {
+        return ionizationMode;
+    }
+
+    public void setIonizationMode(IoniationMode ionizationMode) {
+        this.ionizationMode = ionizationMode;
+    }
+
+    /**
+     * @return The maximum RT difference (in minutes) between features grouped as adducts of one compound.
+     */
+    public double getRtGroupingTolerance() {
+        return rtGroupingTolerance;
+    }
+
+    public void setRtGroupingTolerance(double rtGroupingTolerance) {
+        this.rtGroupingTolerance = rtGroupingTolerance;
+    }
+
+    /**
+     * @return The mass tolerance in ppm used for database matching, isotope peaks and rule-based adduct detection.
+     */
+    public int getPpmTolerance() {
+        return ppmTolerance;
+    }
+
+    public void setPpmTolerance(int ppmTolerance) {
+        this.ppmTolerance = ppmTolerance;
+    }
+
+    public AdductDetection getAdductDetection() {
+        return adductDetection;
+    }
+
+    public void setAdductDetection(AdductDetection adductDetection) {
+        this.adductDetection = adductDetection;
+    }
+
+    /**
+     * @return The number of rule sessions fired in parallel on the peak groups of a sample when the adducts are
+     * detected with {@link AdductDetection#RULES}.
+     */
+    public int getAdductDetectionPartitions() {
+        return adductDetectionPartitions;
+    }
+
+    public void setAdductDetectionPartitions(int adductDetectionPartitions) {
+        this.adductDetectionPartitions = requirePositive(adductDetectionPartitions);
+    }
+
+    /**
+     * @return The elution order of the chromatography method of the samples, used by the scoring rules.
+     */
+    public ElutionOrderModel getElutionOrder() {
+        return elutionOrder;
+    }
+
+    public void setElutionOrder(ElutionOrderModel elutionOrder) {
+        this.elutionOrder = elutionOrder;
+    }
+
+    public ElutionScoring getElutionScoring() {
+        return elutionScoring;
+    }
+
+    public void setElutionScoring(ElutionScoring elutionScoring) {
+        this.elutionScoring = elutionScoring;
+    }
+
+    /**
+     * @return Whether the RTs of a batch of samples are aligned onto a reference sample before annotation.
+     * Aligning reads every sample file twice, once to fit the corrections and once to annotate it.
+     */
+    public boolean isRtAlignment() {
+        return rtAlignment;
+    }
+
+    public void setRtAlignment(boolean rtAlignment) {
+        this.rtAlignment = rtAlignment;
+    }
+
+    /**
+     * @return The maximum RT difference (in minutes) between a landmark feature and the reference feature it is
+     * matched with. It must be larger than the expected drift between batches.
+     */
+    public double getAlignmentRtTolerance() {
+        return alignmentRtTolerance;
+    }
+
+    public void setAlignmentRtTolerance(double alignmentRtTolerance) {
+        this.alignmentRtTolerance = alignmentRtTolerance;
+    }
+
+    /**
+     * @return The width (in minutes) of the RT buckets of the index of the reference landmarks. It changes how
+     * many features each lookup visits, not which features are matched.
+     */
+    public double getAlignmentRtBucketWidth() {
+        return alignmentRtBucketWidth;
+    }
+
+    public void setAlignmentRtBucketWidth(double alignmentRtBucketWidth) {
+        this.alignmentRtBucketWidth = alignmentRtBucketWidth;
+    }
+
+    /**
+     * @return Whether candidates whose observed isotope envelope does not fit their formula are discarded
+     * before the elution order scoring.
+     */
+    public boolean isIsotopeFiltering() {
+        return isotopeFiltering;
+    }
+
+    public void setIsotopeFiltering(boolean isotopeFiltering) {
+        this.isotopeFiltering = isotopeFiltering;
+    }
+
+    /**
+     * @return The isotope fit, between 0 and 1, from which a candidate scores +1 instead of -1. When isotope
+     * filtering is enabled, the candidates below it are discarded.
+     */
+    public double getIsotopeFitThreshold() {
+        return isotopeFitThreshold;
+    }
+
+    public void setIsotopeFitThreshold(double isotopeFitThreshold) {
+        if (isotopeFitThreshold < 0d || isotopeFitThreshold > 1d) {
+            throw new IllegalArgumentException("Isotope fit threshold must be between 0 and 1: " + isotopeFitThreshold);
+        }
+        this.isotopeFitThreshold = isotopeFitThreshold;
+    }
+
+    /**
+     * @return The number of candidate annotations (K) kept for every feature before the elution order scoring.
+     */
+    public int getMaxCandidatesPerFeature() {
+        return maxCandidatesPerFeature;
+    }
+
+    public void setMaxCandidatesPerFeature(int maxCandidatesPerFeature) {
+        this.maxCandidatesPerFeature = requirePositive(maxCandidatesPerFeature);
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = requirePositive(queueCapacity);
+    }
+
+    public int getIngestParallelism() {
+        return ingestParallelism;
+    }
+
+    public void setIngestParallelism(int ingestParallelism) {
+        this.ingestParallelism = requirePositive(ingestParallelism);
+    }
+
+    public int getGroupingParallelism() {
+        return groupingParallelism;
+    }
+
+    public void setGroupingParallelism(int groupingParallelism) {
+        this.groupingParallelism = requirePositive(groupingParallelism);
+    }
+
+    public int getDetectionParallelism() {
+        return detectionParallelism;
+    }
+
+    public void setDetectionParallelism(int detectionParallelism) {
+        this.detectionParallelism = requirePositive(detectionParallelism);
+    }
+
+    public int getMatchingParallelism() {
+        return matchingParallelism;
+    }
+
+    public void setMatchingParallelism(int matchingParallelism) {
+        this.matchingParallelism = requirePositive(matchingParallelism);
+    }
+
+    public int getIsotopeParallelism() {
+        return isotopeParallelism;
+    }
+
+    public void setIsotopeParallelism(int isotopeParallelism) {
+        this.isotopeParallelism = requirePositive(isotopeParallelism);
+    }
+
+    public int getPruningParallelism() {
+        return pruningParallelism;
+    }
+
+    public void setPruningParallelism(int pruningParallelism) {
+        this.pruningParallelism = requirePositive(pruningParallelism);
+    }
+
+    public int getScoringParallelism() {
+        return scoringParallelism;
+    }
+
+    public void setScoringParallelism(int scoringParallelism) {
+        this.scoringParallelism = requirePositive(scoringParallelism);
+    }
+
+    public int getWritingParallelism() {
+        return writingParallelism;
+    }
+
+    public void setWritingParallelism(int writingParallelism) {
+        this.writingParallelism = requirePositive(writingParallelism);
+    }
+
+    /**
+     * @return The maximum number of rule sessions open at the same time by the {@link SampleScheduler}.
+     */
+    public int getMaxConcurrentSessions() {
+        return maxConcurrentSessions;
+    }
+
+    public void setMaxConcurrentSessions(int maxConcurrentSessions) {
+        this.maxConcurrentSessions = requirePositive(maxConcurrentSessions);
+    }
+
+    /**
+     * @return The maximum number of samples loaded in memory at the same time by the {@link SampleScheduler}.
+     */
+    public int getMaxSamplesInFlight() {
+        return maxSamplesInFlight;
+    }
+
+    public void setMaxSamplesInFlight(int maxSamplesInFlight) {
+        this.maxSamplesInFlight = requirePositive(maxSamplesInFlight);
+    }
+
+    private static int requirePositive(int value) {
+        if (value < 1) {
+            throw new IllegalArgumentException("Value must be at least 1: " + value);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,40 @@
+package pipeline;
+
+import lipid.Annotation;
+import lipid.Lipid;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Writes the scored annotations of a sample as a tab separated file named {@code <sample>.tsv}. The adduct
+ * column holds the adduct each candidate was matched with.
+ */
+public class ResultWriter {
+
+    static final String HEADER = "compoundId\tname\tlipidType\tadduct\tmz\trtMin\tintensity\tscore\tnormalizedScore";
+
+    private ResultWriter() {
+    }
+
+    public static Path write(Sample sample, Path outputDir) throws IOException {
+        Path output = outputDir.resolve(sample.getName() + ".tsv");
+        try (BufferedWriter writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            writer.write(HEADER);
+            writer.newLine();
+            for (Annotation annotation : sample.getAnnotations()) {
+                Lipid lipid = annotation.getLipid();
+                writer.write(String.format(Locale.ROOT, "%d\t%s\t%s\t%s\t%.5f\t%.3f\t%.1f\t%d\t%d",
+                        lipid.getCompoundId(), lipid.getName(), lipid.getLipidType(), annotation.getMatchedAdduct(),
+                        annotation.getMz(), annotation.getRtMin(), annotation.getIntensity(),
+                        annotation.getScore(), annotation.getNormalizedScore()));
+                writer.newLine();
+            }
+        }
+        return output;
+    }
+}
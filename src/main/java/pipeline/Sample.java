@@ -0,0 +1,81 @@
+package pipeline;
+
+import lipid.Annotation;
+import lipid.IoniationMode;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Class to represent one injection while it flows through the annotation pipeline. Each stage fills in
+ * the data it produces (features, peak groups, annotations) so the next stage can pick it up.
+ */
+public class Sample {
+
+    private final String name;
+    private final Path source;
+    private final IoniationMode ionizationMode;
+    private List<Feature> features;
+    private List<PeakGroup> peakGroups;
+    private List<Annotation> annotations;
+
+    public Sample(String name, Path source, IoniationMode ionizationMode) {
+        this.name = name;
+        this.source = source;
+        this.ionizationMode = ionizationMode;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Path getSource() {
+        return source;
+    }
+
+    public IoniationMode getIonizationMode() {
+        return ionizationMode;
+    }
+
+    public List<Feature> getFeatures() {
+        return features;
+    }
+
+    public void setFeatures(List<Feature> features) {
+        this.features = features;
+    }
+
+    public List<PeakGroup> getPeakGroups() {
+        return peakGroups;
+    }
+
+    public void setPeakGroups(List<PeakGroup> peakGroups) {
+        this.peakGroups = peakGroups;
+    }
+
+    public List<Annotation> getAnnotations() {
+        return annotations;
+    }
+
+    public void setAnnotations(List<Annotation> annotations) {
+        this.annotations = annotations;
+    }
+
+    /**
+     * Drops the intermediate data of the sample once its results have been written.
+     */
+    public void release() {
+        this.features = null;
+        this.peakGroups = null;
+        this.annotations = null;
+    }
+
+    @Override
+    public String toString() {
+        return "Sample{" +
+                "name='" + name + '\'' +
+                ", source=" + source +
+                ", ionizationMode=" + ionizationMode +
+                '}';
+    }
+}
@@ -0,0 +1,19 @@
+package pipeline;
+
+/**
+ * Receives the progress of the samples run by the {@link SampleScheduler}. The methods are called from
+ * the sample threads, so implementations must be thread safe.
+ */
+public interface SampleListener {
+
+    default void sampleStarted(String sampleName) {
+    }
+
+    /**
+     * @param result    The outcome of the sample.
+     * @param finished  The number of samples finished so far, including this one.
+     * @param total     The number of samples of the batch.
+     */
+    default void sampleFinished(SampleResult result, int finished, int total) {
+    }
+}
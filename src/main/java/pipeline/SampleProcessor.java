@@ -0,0 +1,230 @@
+package pipeline;
+
+import adduct.Adduct;
+import alignment.RtAligner;
+import alignment.RtCorrection;
+import adduct.AdductList;
+import lipid.Annotation;
+import lipid.IoniationMode;
+import lipid.IsotopePatternScorer;
+import lipid.Lipid;
+import lipid.LipidScoreUnit;
+import lipid.RtRegressionScorer;
+import lipid.RuleAdductDetector;
+import lipid.SignalGroup;
+import org.drools.ruleunits.api.DataSource;
+import org.drools.ruleunits.api.RuleUnitInstance;
+import org.drools.ruleunits.api.RuleUnitProvider;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The work done on a single sample by each stage of the annotation pipeline. Every method reads what
+ * the previous stage left in the {@link Sample} and stores its own output there.
+ */
+public class SampleProcessor {
+
+    private final PipelineConfig config;
+    private final LipidDatabase database;
+    private final IsotopePatternScorer isotopeScorer;
+    private final CandidatePruner pruner;
+    private final RuleAdductDetector ruleAdductDetector;
+    private Map<String, RtCorrection> rtCorrections = Map.of();
+
+    public SampleProcessor(PipelineConfig config, LipidDatabase database) {
+        this.config = config;
+        this.database = database;
+        this.isotopeScorer = new IsotopePatternScorer(config.getPpmTolerance(), 0.3d, config.getIsotopeFitThreshold());
+        this.pruner = new CandidatePruner(config.getMaxCandidatesPerFeature(), isotopeScorer, database);
+        this.ruleAdductDetector = new RuleAdductDetector(config.getPpmTolerance(), config.getAdductDetectionPartitions());
+    }
+
+    /**
+     * @param rtCorrections The RT correction of each sample, by sample name. Samples without a correction
+     *                      keep their RTs.
+     */
+    public void setRtCorrections(Map<String, RtCorrection> rtCorrections) {
+        this.rtCorrections = Map.copyOf(rtCorrections);
+    }
+
+    /**
+     * Fits the RT corrections of a batch of samples when {@link PipelineConfig#isRtAlignment()} is enabled and
+     * the batch has more than one sample. The corrections replace the ones set before.
+     */
+    public void alignSamples(List<Path> sampleFiles) {
+        if (!config.isRtAlignment() || sampleFiles.size() < 2) return;
+        RtAligner aligner = new RtAligner(config.getPpmTolerance(), config.getAlignmentRtTolerance(),
+                config.getAlignmentRtBucketWidth(), 1.0d, 3, 2000);
+        setRtCorrections(aligner.fitFiles(sampleFiles));
+    }
+
+    /**
+     * Reads the features of the sample from its source file and corrects their RTs, so the annotations
+     * built from them are scored with RTs aligned across samples.
+     */
+    public void ingest(Sample sample) throws IOException {
+        RtCorrection correction = rtCorrections.getOrDefault(sample.getName(), RtCorrection.IDENTITY);
+        sample.setFeatures(correction.apply(FeatureReader.read(sample.getSource())));
+    }
+
+    /**
+     * Groups co-eluting features. Features are sorted by RT and a new group is started whenever a
+     * feature elutes more than the RT grouping tolerance after the first feature of the current group.
+     */
+    public void groupPeaks(Sample sample) {
+        List<Feature> features = new ArrayList<>(sample.getFeatures());
+        features.sort(Comparator.comparingDouble(Feature::getRtMin));
+        List<PeakGroup> groups = new ArrayList<>();
+        int start = 0;
+        for (int i = 1; i <= features.size(); i++) {
+            if (i == features.size()
+                    || features.get(i).getRtMin() - features.get(start).getRtMin() > config.getRtGroupingTolerance()) {
+                groups.add(new PeakGroup(features.subList(start, i)));
+                start = i;
+            }
+        }
+        sample.setPeakGroups(groups);
+        sample.setFeatures(null);
+    }
+
+    /**
+     * Detects the adduct of every feature from the m/z differences with the rest of its group, with the
+     * implementation selected in the configuration.
+     */
+    public void detectAdducts(Sample sample) {
+        if (config.getAdductDetection() == PipelineConfig.AdductDetection.RULES) {
+            detectAdductsWithRules(sample);
+            return;
+        }
+        for (PeakGroup group : sample.getPeakGroups()) {
+            List<Feature> features = group.getFeatures();
+            if (features.size() < 2) continue;
+            for (int i = 0; i < features.size(); i++) {
+                group.setAdduct(i, Annotation.detectAdduct(features.get(i).getMz(), sample.getIonizationMode(), group.getSignals()));
+            }
+        }
+    }
+
+    private void detectAdductsWithRules(Sample sample) {
+        List<PeakGroup> groups = new ArrayList<>();
+        for (PeakGroup group : sample.getPeakGroups()) {
+            if (group.getFeatures().size() >= 2) groups.add(group);
+        }
+        int count = 0;
+        for (PeakGroup group : groups) {
+            count += group.getFeatures().size();
+        }
+        double[] mzs = new double[count];
+        IoniationMode[] modes = new IoniationMode[count];
+        SignalGroup[] signals = new SignalGroup[count];
+        int next = 0;
+        for (PeakGroup group : groups) {
+            for (Feature feature : group.getFeatures()) {
+                mzs[next] = feature.getMz();
+                modes[next] = sample.getIonizationMode();
+                signals[next] = group.getSignals();
+                next++;
+            }
+        }
+        String[] adducts = ruleAdductDetector.detect(mzs, modes, signals);
+        next = 0;
+        for (PeakGroup group : groups) {
+            for (int i = 0; i < group.getFeatures().size(); i++) {
+                group.setAdduct(i, adducts[next++]);
+            }
+        }
+    }
+
+    /**
+     * Matches every feature against the lipid database. When the adduct of the feature was detected only
+     * that adduct is used to compute the neutral mass, otherwise every adduct of the ionization mode is tried.
+     * Every candidate records the adduct detected for its feature and the adduct it was matched with.
+     */
+    public void matchDatabase(Sample sample) {
+        Map<String, Double> adductMap = adductMap(sample.getIonizationMode());
+        List<Annotation> annotations = new ArrayList<>();
+        for (PeakGroup group : sample.getPeakGroups()) {
+            List<Feature> features = group.getFeatures();
+            for (int i = 0; i < features.size(); i++) {
+                Feature feature = features.get(i);
+                String detectedAdduct = group.getAdduct(i);
+                Set<Annotation> candidates = new LinkedHashSet<>();
+                for (Map.Entry<String, Double> adduct : adductMap.entrySet()) {
+                    if (detectedAdduct != null && !detectedAdduct.equals(adduct.getKey())) continue;
+                    double mass = Adduct.getMonoisotopicMassFromMZ(feature.getMz(), adduct);
+                    for (Lipid lipid : database.findByMass(mass, config.getPpmTolerance())) {
+                        Annotation annotation = new Annotation(lipid, feature.getMz(), feature.getIntensity(),
+                                feature.getRtMin(), sample.getIonizationMode(), group.getSignals());
+                        annotation.setDetectedAdduct(detectedAdduct);
+                        annotation.setAdduct(adduct.getKey());
+                        candidates.add(annotation);
+                    }
+                }
+                annotations.addAll(candidates);
+            }
+        }
+        sample.setAnnotations(annotations);
+        sample.setPeakGroups(null);
+    }
+
+    /**
+     * Scores every candidate by the fit of its isotope envelope. When isotope filtering is enabled, the
+     * candidates whose observed isotope envelope is below {@link PipelineConfig#getIsotopeFitThreshold()} are
+     * discarded so they do not reach the elution order rules. Candidates without observed isotopes are kept.
+     */
+    public void scoreIsotopes(Sample sample) {
+        sample.getAnnotations().removeIf(annotation -> {
+            double fit = isotopeScorer.score(annotation);
+            return config.isIsotopeFiltering() && !Double.isNaN(fit) && !isotopeScorer.accepts(fit);
+        });
+    }
+
+    /**
+     * Keeps only the best candidates of every feature, so the rule session size is bounded.
+     */
+    public void pruneCandidates(Sample sample) {
+        sample.setAnnotations(pruner.prune(sample.getAnnotations(), adductMap(sample.getIonizationMode())));
+    }
+
+    /**
+     * Scores the annotations of the sample with the elution order rules in a session of its own, or with the
+     * RT regressions of the sample when {@link PipelineConfig#getElutionScoring()} is {@code REGRESSION}.
+     */
+    public void scoreElutionOrder(Sample sample) {
+        if (config.getElutionScoring() == PipelineConfig.ElutionScoring.REGRESSION) {
+            new RtRegressionScorer().scoreAll(sample.getAnnotations());
+            return;
+        }
+        LipidScoreUnit lipidScoreUnit = new LipidScoreUnit(DataSource.createStore(), config.getElutionOrder());
+        RuleUnitInstance<LipidScoreUnit> instance = RuleUnitProvider.get().createRuleUnitInstance(lipidScoreUnit);
+        try {
+            for (Annotation annotation : sample.getAnnotations()) {
+                lipidScoreUnit.getAnnotations().add(annotation);
+            }
+            instance.fire();
+        } finally {
+            instance.close();
+        }
+    }
+
+    public Path writeResults(Sample sample, Path outputDir) throws IOException {
+        Path output = ResultWriter.write(sample, outputDir);
+        sample.release();
+        return output;
+    }
+
+    static Map<String, Double> adductMap(IoniationMode ionizationMode) {
+        switch (ionizationMode) {
+            case NEGATIVE: return AdductList.MAPMZNEGATIVEADDUCTS;
+            case POSITIVE:
+            default: return AdductList.MAPMZPOSITIVEADDUCTS;
+        }
+    }
+}
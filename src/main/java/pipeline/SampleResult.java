@@ -0,0 +1,84 @@
+package pipeline;
+
+/**
+ * Outcome of the processing of one sample by the {@link SampleScheduler}.
+ */
+public class SampleResult {
+
+    public enum Status {
+        SUCCEEDED, FAILED
+    }
+
+    private final String sampleName;
+    private final Status status;
+    private final int annotationCount;
+    private final long elapsedMillis;
+    private final long scoringMillis;
+    private final Throwable error;
+
+    private SampleResult(String sampleName, Status status, int annotationCount, long elapsedMillis, long scoringMillis, Throwable error) {
+        this.sampleName = sampleName;
+        this.status = status;
+        this.annotationCount = annotationCount;
+        this.elapsedMillis = elapsedMillis;
+        this.scoringMillis = scoringMillis;
+        this.error = error;
+    }
+
+    static SampleResult succeeded(String sampleName, int annotationCount, long elapsedMillis, long scoringMillis) {
+        return new SampleResult(sampleName, Status.SUCCEEDED, annotationCount, elapsedMillis, scoringMillis, null);
+    }
+
+    static SampleResult failed(String sampleName, long elapsedMillis, Throwable error) {
+        return new SampleResult(sampleName, Status.FAILED, 0, elapsedMillis, 0, error);
+    }
+
+    public String getSampleName() {
+        return sampleName;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isSucceeded() {
+        return status == Status.SUCCEEDED;
+    }
+
+    public int getAnnotationCount() {
+        return annotationCount;
+    }
+
+    /**
+     * @return The wall time spent on the sample, including the wait for a rule session.
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * @return The time spent inside the rule session of the sample.
+     */
+    public long getScoringMillis() {
+        return scoringMillis;
+    }
+
+    /**
+     * @return The exception or error that made the sample fail, or {@code null} if it succeeded.
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return "SampleResult{" +
+                "sampleName='" + sampleName + '\'' +
+                ", status=" + status +
+                ", annotationCount=" + annotationCount +
+                ", elapsedMillis=" + elapsedMillis +
+                ", scoringMillis=" + scoringMillis +
+                (error != null ? ", error=" + error : "") +
+                '}';
+    }
+}
@@ -0,0 +1,171 @@
+package pipeline;
+
+import alignment.RtCorrection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sample-level scheduler for studies with many injections. Every sample runs on a virtual thread of its
+ * own and is scored in an isolated {@link lipid.LipidScoreUnit} session.
+ * <p>
+ * Two limits bound the memory used by a batch: the number of samples loaded at the same time and the
+ * number of rule sessions open at the same time. A sample that fails, with an exception or an error, is
+ * reported in its {@link SampleResult} and does not stop the rest of the batch.
+ * </p>
+ */
+public class SampleScheduler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SampleScheduler.class);
+
+    private final PipelineConfig config;
+    private final SampleProcessor processor;
+
+    public SampleScheduler(PipelineConfig config, LipidDatabase database) {
+        this(config, new SampleProcessor(config, database));
+    }
+
+    SampleScheduler(PipelineConfig config, SampleProcessor processor) {
+        this.config = config;
+        this.processor = processor;
+    }
+
+    /**
+     * @param rtCorrections The RT correction of each sample, by sample name, applied when the sample is read.
+     *                      They are replaced by the fitted ones when {@link PipelineConfig#isRtAlignment()} is
+     *                      enabled.
+     */
+    public void setRtCorrections(Map<String, RtCorrection> rtCorrections) {
+        processor.setRtCorrections(rtCorrections);
+    }
+
+    /**
+     * Processes every sample file and writes one result file per sample.
+     *
+     * @param sampleFiles The feature files of the samples.
+     * @param outputDir   The directory where the results are written.
+     * @param listener    Receives the progress of the samples.
+     * @return The result of every sample, in the order of {@code sampleFiles}.
+     * @throws InterruptedException if the calling thread is interrupted while waiting for the samples.
+     */
+    public List<SampleResult> run(List<Path> sampleFiles, Path outputDir, SampleListener listener) throws InterruptedException {
+        processor.alignSamples(sampleFiles);
+        Semaphore samplesInFlight = new Semaphore(config.getMaxSamplesInFlight(), true);
+        Semaphore sessions = new Semaphore(config.getMaxConcurrentSessions(), true);
+        AtomicInteger finished = new AtomicInteger();
+        int total = sampleFiles.size();
+
+        List<Future<SampleResult>> futures = new ArrayList<>(total);
+        List<String> names = new ArrayList<>(total);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Path file : sampleFiles) {
+                Sample sample = new Sample(FeatureReader.sampleName(file), file, config.getIonizationMode());
+                names.add(sample.getName());
+                futures.add(executor.submit(() -> {
+                    SampleResult result = process(sample, outputDir, samplesInFlight, sessions, listener);
+                    listener.sampleFinished(result, finished.incrementAndGet(), total);
+                    return result;
+                }));
+            }
+        }
+
+        List<SampleResult> results = new ArrayList<>(total);
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                results.add(futures.get(i).get());
+            } catch (ExecutionException e) {
+                // process() turns every failure of the sample into its result, so only the listener can throw
+                throw new IllegalStateException("Sample listener failed for sample " + names.get(i), e.getCause());
+            }
+        }
+        return results;
+    }
+
+    public List<SampleResult> run(List<Path> sampleFiles, Path outputDir) throws InterruptedException {
+        return run(sampleFiles, outputDir, new LoggingListener());
+    }
+
+    /**
+     * Runs every step on the sample. Any failure of the sample, errors and interruptions included, is returned
+     * as a failed result, so the only exceptions thrown are the ones of the listener.
+     */
+    private SampleResult process(Sample sample, Path outputDir, Semaphore samplesInFlight, Semaphore sessions,
+                                 SampleListener listener) {
+        try {
+            samplesInFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return SampleResult.failed(sample.getName(), 0, e);
+        }
+        try {
+            listener.sampleStarted(sample.getName());
+            return annotate(sample, outputDir, sessions);
+        } finally {
+            samplesInFlight.release();
+        }
+    }
+
+    private SampleResult annotate(Sample sample, Path outputDir, Semaphore sessions) {
+        long start = System.nanoTime();
+        try {
+            processor.ingest(sample);
+            processor.groupPeaks(sample);
+            processor.detectAdducts(sample);
+            processor.matchDatabase(sample);
+            processor.scoreIsotopes(sample);
+            processor.pruneCandidates(sample);
+            int annotationCount = sample.getAnnotations().size();
+
+            long scoringStart;
+            long scoringEnd;
+            sessions.acquire();
+            try {
+                scoringStart = System.nanoTime();
+                processor.scoreElutionOrder(sample);
+                scoringEnd = System.nanoTime();
+            } finally {
+                sessions.release();
+            }
+
+            processor.writeResults(sample, outputDir);
+            return SampleResult.succeeded(sample.getName(), annotationCount, millisSince(start),
+                    (scoringEnd - scoringStart) / 1_000_000);
+        } catch (Throwable e) {
+            if (e instanceof InterruptedException) Thread.currentThread().interrupt();
+            sample.release();
+            return SampleResult.failed(sample.getName(), millisSince(start), e);
+        }
+    }
+
+    private static long millisSince(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    /**
+     * Default listener, which logs the outcome of every sample.
+     */
+    public static class LoggingListener implements SampleListener {
+
+        @Override
+        public void sampleFinished(SampleResult result, int finished, int total) {
+            if (result.isSucceeded()) {
+                LOG.info("[{}/{}] Sample {}: {} annotations in {} ms ({} ms scoring)", finished, total,
+                        result.getSampleName(), result.getAnnotationCount(), result.getElapsedMillis(),
+                        result.getScoringMillis());
+            } else {
+                LOG.error("[{}/{}] Sample {} failed after {} ms", finished, total, result.getSampleName(),
+                        result.getElapsedMillis(), result.getError());
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package pipeline;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One stage of the annotation pipeline. A stage runs {@code parallelism} workers that take samples from
+ * the input queue, apply the stage step and put them in the output queue. The queues are bounded, so a
+ * slow stage makes the upstream stages block instead of piling up samples in memory.
+ * <p>
+ * The end of the stream is marked with {@link AnnotationPipeline#END}. A worker that takes it puts it
+ * back for its siblings, and the last worker to finish forwards it to the next stage.
+ * </p>
+ * <p>
+ * A sample whose step fails, with an exception or an error, is recorded as failed and dropped, and the worker
+ * goes on with the next sample.
+ * </p>
+ */
+class Stage {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Stage.class);
+
+    @FunctionalInterface
+    interface Step {
+        void apply(Sample sample) throws Exception;
+    }
+
+    private final String name;
+    private final int parallelism;
+    private final Step step;
+
+    Stage(String name, int parallelism, Step step) {
+        this.name = name;
+        this.parallelism = parallelism;
+        this.step = step;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    int getParallelism() {
+        return parallelism;
+    }
+
+    void start(BlockingQueue<Sample> input, BlockingQueue<Sample> output, ExecutorService executor, List<String> failedSamples) {
+        AtomicInteger liveWorkers = new AtomicInteger(parallelism);
+        for (int i = 0; i < parallelism; i++) {
+            executor.execute(() -> work(input, output, liveWorkers, failedSamples));
+        }
+    }
+
+    private void work(BlockingQueue<Sample> input, BlockingQueue<Sample> output, AtomicInteger liveWorkers, List<String> failedSamples) {
+        try {
+            Sample sample;
+            while ((sample = input.take()) != AnnotationPipeline.END) {
+                if (apply(sample, failedSamples)) {
+                    output.put(sample);
+                }
+            }
+            input.put(AnnotationPipeline.END);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // a worker that stops for any reason must still let the last one forward the end of the stream
+            if (liveWorkers.decrementAndGet() == 0) {
+                forwardEnd(output);
+            }
+        }
+    }
+
+    /**
+     * Applies the step to a sample. Any failure, errors included, is logged and marks the sample as failed,
+     * so it never takes the worker down with it.
+     *
+     * @return Whether the step succeeded and the sample goes on to the next stage.
+     * @throws InterruptedException if the worker is interrupted during the step.
+     */
+    private boolean apply(Sample sample, List<String> failedSamples) throws InterruptedException {
+        try {
+            step.apply(sample);
+            return true;
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Throwable e) {
+            LOG.error("Stage {} failed for sample {}", name, sample.getName(), e);
+            failedSamples.add(sample.getName());
+            sample.release();
+            return false;
+        }
+    }
+
+    private static void forwardEnd(BlockingQueue<Sample> output) {
+        try {
+            output.put(AnnotationPipeline.END);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
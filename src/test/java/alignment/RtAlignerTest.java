@@ -0,0 +1,84 @@
+package alignment;
+
+import org.junit.Test;
+import pipeline.Feature;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RtAlignerTest {
+
+    @Test
+    public void shouldFindClosestFeatureWithinTolerance() {
+        Feature f1 = new Feature(885.79057, 1000, 10.0);
+        Feature f2 = new Feature(885.79100, 1000, 10.4);
+        FeatureGridIndex index = new FeatureGridIndex(List.of(f1, f2), 10, 0.5);
+
+        assertSame(f1, index.findClosest(885.7906, 10.1));
+        assertSame(f2, index.findClosest(885.7910, 10.35));
+        assertNull("Out of m/z tolerance", index.findClosest(885.80, 10.0));
+        assertNull("Out of RT tolerance", index.findClosest(885.79057, 11.0));
+    }
+
+    @Test
+    public void shouldMatchTheSameFeaturesWithNarrowerRtBuckets() {
+        Random random = new Random(7);
+        List<Feature> features = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            features.add(new Feature(400 + random.nextDouble(), 1000, random.nextDouble() * 20));
+        }
+        FeatureGridIndex wide = new FeatureGridIndex(features, 10, 0.5);
+        FeatureGridIndex narrow = new FeatureGridIndex(features, 10, 0.5, 0.07);
+        int matched = 0;
+        for (int i = 0; i < 2000; i++) {
+            double mz = 400 + random.nextDouble();
+            double rt = random.nextDouble() * 20;
+            Feature closest = wide.findClosest(mz, rt);
+            assertSame(closest, narrow.findClosest(mz, rt));
+            if (closest != null) matched++;
+        }
+        assertTrue(matched > 500);
+    }
+
+    @Test
+    public void shouldInterpolateBetweenKnots() {
+        RtCorrection correction = new RtCorrection(new double[]{2, 4}, new double[]{0.2, 0.4});
+        assertEquals(1.2, correction.apply(1.0), 1e-9);
+        assertEquals(3.3, correction.apply(3.0), 1e-9);
+        assertEquals(10.4, correction.apply(10.0), 1e-9);
+    }
+
+    @Test
+    public void shouldCorrectNonLinearDrift() {
+        Random random = new Random(42);
+        List<Feature> reference = new ArrayList<>();
+        List<Feature> drifted = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            double mz = 400 + random.nextDouble() * 600;
+            double rt = 1 + random.nextDouble() * 18;
+            reference.add(new Feature(mz, 1000 + random.nextInt(1000), rt));
+            // the drifted batch elutes later, more so at the end of the gradient
+            double drift = 0.1 + 0.01 * rt + 0.001 * rt * rt;
+            drifted.add(new Feature(mz * (1 + 2e-6), 1000 + random.nextInt(1000), rt + drift));
+        }
+        reference.add(new Feature(500, 10, 5)); // one feature more, so it is chosen as reference
+
+        Map<String, RtCorrection> corrections = new RtAligner(10, 1.0, 1.0, 3, 5000).fit(Map.of("reference", reference, "drifted", drifted));
+
+        assertSame(RtCorrection.IDENTITY, corrections.get("reference"));
+        RtCorrection correction = corrections.get("drifted");
+        assertNotNull(correction);
+        assertTrue(correction.getKnotCount() > 10);
+        for (int i = 0; i < drifted.size(); i += 50) {
+            assertEquals(reference.get(i).getRtMin(), correction.apply(drifted.get(i).getRtMin()), 0.05);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package dataset;
+
+import adduct.AdductList;
+import lipid.IoniationMode;
+import lipid.Lipid;
+import lipid.LipidType;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary file of a synthetic dataset, read back one sample at a time so that datasets of millions of
+ * annotations do not have to fit in memory.
+ * <p>
+ * The file holds a header (seed, ionization mode and lipid library) followed by the samples. Every annotation
+ * is stored as the index of its lipid, its m/z, intensity and RT, its expected adduct and violation flag and its
+ * peaks (m/z as doubles, intensities as floats), about 100 bytes per annotation.
+ * </p>
+ */
+public final class DatasetFile {
+
+    private static final int MAGIC = 0x4C495044; // LIPD
+    private static final int VERSION = 1;
+    private static final int END = -1;
+
+    private DatasetFile() {
+    }
+
+    /**
+     * Generates the dataset and writes it sample by sample.
+     *
+     * @return The number of annotations written.
+     */
+    public static long write(DatasetGenerator generator, Path file) throws IOException {
+        LipidLibrary library = generator.getLibrary();
+        long[] written = {0L};
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(generator.getSpec().getSeed());
+            out.writeByte(generator.getSpec().getIonizationMode().ordinal());
+            out.writeInt(library.size());
+            for (Lipid lipid : library.getLipids()) {
+                out.writeInt(lipid.getCompoundId());
+                out.writeUTF(lipid.getName());
+                out.writeUTF(lipid.getFormula());
+                out.writeByte(lipid.getLipidType().ordinal());
+                out.writeShort(lipid.getCarbonCount());
+                out.writeShort(lipid.getDoubleBondsCount());
+            }
+            try {
+                generator.forEachSample(sample -> {
+                    try {
+                        writeSample(out, sample);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    written[0] += sample.size();
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            out.writeInt(END);
+        }
+        return written[0];
+    }
+
+    public static Reader open(Path file) throws IOException {
+        return new Reader(file);
+    }
+
+    private static void writeSample(DataOutputStream out, List<SyntheticAnnotation> sample) throws IOException {
+        out.writeInt(sample.isEmpty() ? 0 : sample.get(0).getSample());
+        out.writeInt(sample.size());
+        for (SyntheticAnnotation annotation : sample) {
+            out.writeInt(annotation.getLipidIndex());
+            out.writeDouble(annotation.getMz());
+            out.writeFloat((float) annotation.getIntensity());
+            out.writeDouble(annotation.getRtMin());
+            out.writeByte(AdductList.getAdductId(annotation.getExpectedAdduct()));
+            out.writeBoolean(annotation.isViolation());
+            out.writeByte(annotation.getPeakCount());
+            for (int i = 0; i < annotation.getPeakCount(); i++) {
+                out.writeDouble(annotation.getPeakMz(i));
+                out.writeFloat((float) annotation.getPeakIntensity(i));
+            }
+        }
+    }
+
+    /**
+     * Streams the samples of a dataset file.
+     */
+    public static final class Reader implements Closeable {
+
+        private final DataInputStream in;
+        private final long seed;
+        private final IoniationMode ionizationMode;
+        private final LipidLibrary library;
+        private boolean finished;
+
+        private Reader(Path file) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16));
+            try {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    throw new IOException("Not a dataset file: " + file);
+                }
+                this.seed = in.readLong();
+                this.ionizationMode = IoniationMode.values()[in.readByte()];
+                int size = in.readInt();
+                List<Lipid> lipids = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    lipids.add(new Lipid(in.readInt(), in.readUTF(), in.readUTF(), LipidType.values()[in.readByte()],
+                            in.readShort(), in.readShort()));
+                }
+                this.library = new LipidLibrary(lipids);
+            } catch (IOException e) {
+                in.close();
+                throw e;
+            }
+        }
+
+        public long getSeed() {
+            return seed;
+        }
+
+        public IoniationMode getIonizationMode() {
+            return ionizationMode;
+        }
+
+        public LipidLibrary getLibrary() {
+            return library;
+        }
+
+        /**
+         * @return The annotations of the next sample, or {@code null} after the last one.
+         */
+        public List<SyntheticAnnotation> nextSample() throws IOException {
+            if (finished) return null;
+            int sample = in.readInt();
+            if (sample == END) {
+                finished = true;
+                return null;
+            }
+            int count = in.readInt();
+            List<SyntheticAnnotation> annotations = new ArrayList<>(count);
+            for (int a = 0; a < count; a++) {
+                int lipidIndex = in.readInt();
+                double mz = in.readDouble();
+                double intensity = in.readFloat();
+                double rtMin = in.readDouble();
+                String expectedAdduct = AdductList.getAdductName(in.readByte());
+                boolean violation = in.readBoolean();
+                int peakCount = in.readUnsignedByte();
+                double[] peakMzs = new double[peakCount];
+                double[] peakIntensities = new double[peakCount];
+                for (int i = 0; i < peakCount; i++) {
+                    peakMzs[i] = in.readDouble();
+                    peakIntensities[i] = in.readFloat();
+                }
+                annotations.add(new SyntheticAnnotation(sample, lipidIndex, mz, intensity, rtMin, peakMzs,
+                        peakIntensities, expectedAdduct, violation));
+            }
+            return annotations;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package dataset;
+
+import adduct.Adduct;
+import adduct.AdductList;
+import lipid.ElutionOrderModel;
+import lipid.IoniationMode;
+import lipid.IsotopePattern;
+import lipid.IsotopePatternScorer;
+import lipid.Lipid;
+import lipid.LipidType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+/**
+ * Seeded generator of synthetic samples of lipid annotations.
+ * <p>
+ * Every sample contains each lipid of the {@link LipidLibrary} at most once (with probability
+ * {@link DatasetSpec#getPresence()}), so a sample is scored in a rule session of its own. RTs are a sum of a
+ * carbon, a double bond and a class term that follows the directions and class order of the elution order
+ * model, plus a small noise that never reverses the order. A fraction of the RTs is then moved by 2 to 5 minutes
+ * to inject elution order violations.
+ * </p>
+ * <p>
+ * The peak group of every annotation holds the base adduct, a second adduct of lower m/z, the M+1 and M+2
+ * isotopes and unrelated noise peaks of higher m/z. The adduct pairs are chosen among the ones that no other
+ * adduct of the ionization mode can explain within twice the detection tolerance, so the expected adduct is
+ * known. Intensities are rounded to floats, as they are stored in a {@link DatasetFile}.
+ * </p>
+ * <p>
+ * Each sample has its own random generator, derived from the seed and the sample index, so samples can be
+ * generated in any order.
+ * </p>
+ */
+public class DatasetGenerator {
+
+    private static final int DETECTION_PPM = 10;
+    private static final double CARBON_STEP = 0.35d;
+    private static final double DOUBLE_BOND_STEP = 0.9d;
+    private static final double CLASS_STEP = 0.6d;
+
+    private final DatasetSpec spec;
+    private final LipidLibrary library;
+    private final List<Map.Entry<String, Double>> adducts;
+    private final int[][] adductPairs;
+    private final int[] classRanks;
+    private final int maxCarbons;
+    private final IsotopePatternScorer isotopes = new IsotopePatternScorer();
+
+    public DatasetGenerator(DatasetSpec spec) {
+        this.spec = spec;
+        this.library = new LipidLibrary(spec);
+        this.adducts = new ArrayList<>((spec.getIonizationMode() == IoniationMode.NEGATIVE
+                ? AdductList.MAPMZNEGATIVEADDUCTS : AdductList.MAPMZPOSITIVEADDUCTS).entrySet());
+        this.adductPairs = new int[library.size()][];
+        for (int i = 0; i < library.size(); i++) {
+            adductPairs[i] = unambiguousPairs(library.getMass(i));
+        }
+        ElutionOrderModel model = spec.getElutionOrder();
+        TreeSet<Integer> orders = new TreeSet<>();
+        for (LipidType type : LipidType.values()) {
+            orders.add(model.getLipidTypeOrder(type));
+        }
+        this.classRanks = new int[LipidType.values().length];
+        for (LipidType type : LipidType.values()) {
+            classRanks[type.ordinal()] = orders.headSet(model.getLipidTypeOrder(type)).size();
+        }
+        int max = 0;
+        for (Lipid lipid : library.getLipids()) {
+            max = Math.max(max, lipid.getCarbonCount());
+        }
+        this.maxCarbons = max;
+    }
+
+    public DatasetSpec getSpec() {
+        return spec;
+    }
+
+    public LipidLibrary getLibrary() {
+        return library;
+    }
+
+    /**
+     * Generates samples until {@link DatasetSpec#getAnnotations()} annotations have been generated, handing
+     * each one to {@code consumer} as soon as it is complete.
+     */
+    public void forEachSample(Consumer<List<SyntheticAnnotation>> consumer) {
+        int generated = 0;
+        for (int sample = 0; generated < spec.getAnnotations(); sample++) {
+            List<SyntheticAnnotation> annotations = generateSample(sample);
+            generated += annotations.size();
+            consumer.accept(annotations);
+        }
+    }
+
+    public List<SyntheticAnnotation> generateSample(int sample) {
+        SplittableRandom random = new SplittableRandom(spec.getSeed() * 1_000_003L + sample);
+        ElutionOrderModel model = spec.getElutionOrder();
+        List<SyntheticAnnotation> annotations = new ArrayList<>();
+        for (int index = 0; index < library.size(); index++) {
+            if (random.nextDouble() >= spec.getPresence()) continue;
+            Lipid lipid = library.get(index);
+
+            double rtMin = 1d
+                    + term(model.getCarbonCountDirection(), CARBON_STEP, lipid.getCarbonCount(), maxCarbons)
+                    + term(model.getDoubleBondsDirection(), DOUBLE_BOND_STEP, lipid.getDoubleBondsCount(), spec.getMaxDoubleBonds())
+                    + term(model.getLipidTypeDirection(), CLASS_STEP, classRanks[lipid.getLipidType().ordinal()], LipidType.values().length)
+                    + uniform(random, spec.getRtNoise());
+            boolean violation = random.nextDouble() < spec.getViolationRate();
+            if (violation) {
+                double shift = 2d + 3d * random.nextDouble();
+                rtMin = random.nextBoolean() || rtMin - shift < 0.5d ? rtMin + shift : rtMin - shift;
+            }
+
+            int[] pairs = adductPairs[index];
+            int pair = pairs.length == 0 ? -1 : pairs[random.nextInt(pairs.length)];
+            Map.Entry<String, Double> base = adducts.get(pair < 0 ? 0 : pair / adducts.size());
+            double mass = library.getMass(index);
+            double baseMz = Adduct.getMZFromMonoisotopicMass(mass, base);
+            double intensity = (float) Math.pow(10d, 5d + 2d * random.nextDouble());
+
+            List<double[]> peaks = new ArrayList<>();
+            double observedMz = withPpmNoise(random, baseMz);
+            peaks.add(new double[]{observedMz, intensity});
+            if (pair >= 0) {
+                double companionMz = Adduct.getMZFromMonoisotopicMass(mass, adducts.get(pair % adducts.size()));
+                peaks.add(new double[]{withPpmNoise(random, companionMz), (float) (intensity * (0.2d + 0.6d * random.nextDouble()))});
+            }
+            IsotopePattern pattern = isotopes.predict(lipid.getFormula());
+            double spacing = IsotopePatternScorer.ISOTOPE_MASS_DIFFERENCE / Adduct.getAdductCharge(base.getKey());
+            peaks.add(new double[]{withPpmNoise(random, baseMz + spacing),
+                    (float) (intensity * pattern.getRelativeAbundanceM1() * (1d + uniform(random, spec.getIsotopeNoise())))});
+            peaks.add(new double[]{withPpmNoise(random, baseMz + 2 * spacing),
+                    (float) (intensity * pattern.getRelativeAbundanceM2() * (1d + uniform(random, spec.getIsotopeNoise())))});
+            for (int i = 0; i < spec.getNoisePeaks(); i++) {
+                peaks.add(new double[]{baseMz + 3d + 47d * random.nextDouble(), (float) Math.pow(10d, 3d + random.nextDouble())});
+            }
+            peaks.sort((a, b) -> Double.compare(a[0], b[0]));
+            double[] peakMzs = new double[peaks.size()];
+            double[] peakIntensities = new double[peaks.size()];
+            for (int i = 0; i < peakMzs.length; i++) {
+                peakMzs[i] = peaks.get(i)[0];
+                peakIntensities[i] = peaks.get(i)[1];
+            }
+
+            annotations.add(new SyntheticAnnotation(sample, index, observedMz, intensity, rtMin, peakMzs, peakIntensities,
+                    pair < 0 ? null : base.getKey(), violation));
+        }
+        return annotations;
+    }
+
+    /**
+     * @return The (base, companion) adduct pairs, encoded as {@code base * adducts + companion}, whose m/z
+     * difference for the mass is only explained by the base adduct and whose companion has a lower m/z.
+     */
+    private int[] unambiguousPairs(double mass) {
+        int margin = DETECTION_PPM + 2 * (int) Math.ceil(spec.getPpmNoise()) + 1;
+        int[] pairs = new int[adducts.size() * adducts.size()];
+        int count = 0;
+        for (int base = 0; base < adducts.size(); base++) {
+            double baseMz = Adduct.getMZFromMonoisotopicMass(mass, adducts.get(base));
+            for (int companion = 0; companion < adducts.size(); companion++) {
+                if (companion == base) continue;
+                double companionMz = Adduct.getMZFromMonoisotopicMass(mass, adducts.get(companion));
+                if (companionMz > baseMz - 0.02d) continue;
+                boolean ambiguous = false;
+                for (int other = 0; other < adducts.size() && !ambiguous; other++) {
+                    if (other == base) continue;
+                    double otherMass = Adduct.getMonoisotopicMassFromMZ(baseMz, adducts.get(other));
+                    for (int second = 0; second < adducts.size() && !ambiguous; second++) {
+                        if (second == other) continue;
+                        double predicted = Adduct.getMZFromMonoisotopicMass(otherMass, adducts.get(second));
+                        ambiguous = Adduct.calculatePPMIncrement(companionMz, predicted) <= margin;
+                    }
+                }
+                if (!ambiguous) pairs[count++] = base * adducts.size() + companion;
+            }
+        }
+        return Arrays.copyOf(pairs, count);
+    }
+
+    private static double term(int direction, double step, int value, int max) {
+        if (direction > 0) return step * value;
+        if (direction < 0) return step * (max - value);
+        return 0d;
+    }
+
+    private double withPpmNoise(SplittableRandom random, double mz) {
+        return mz * (1d + uniform(random, spec.getPpmNoise()) / 1_000_000d);
+    }
+
+    private static double uniform(SplittableRandom random, double maxAbs) {
+        return maxAbs == 0d ? 0d : (2d * random.nextDouble() - 1d) * maxAbs;
+    }
+}
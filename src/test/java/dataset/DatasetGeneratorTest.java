@@ -0,0 +1,92 @@
+package dataset;
+
+import lipid.Annotation;
+import lipid.IoniationMode;
+import lipid.LipidType;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DatasetGeneratorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void formulasFollowTheHeadGroupOfTheClass() {
+        assertEquals("C42H82NO8P", LipidLibrary.formula(LipidType.PC, 34, 1));
+        assertEquals("C41H78NO8P", LipidLibrary.formula(LipidType.PE, 36, 2));
+        assertEquals("C43H83O13P", LipidLibrary.formula(LipidType.PI, 34, 0));
+        assertEquals("C40H79O10P", LipidLibrary.formula(LipidType.PG, 34, 0));
+        assertEquals("C57H104O6", LipidLibrary.formula(LipidType.TG, 54, 3));
+    }
+
+    @Test
+    public void sameSeedGivesTheSameDataset() {
+        DatasetSpec spec = new DatasetSpec();
+        spec.setViolationRate(0.05d);
+        DatasetGenerator first = new DatasetGenerator(spec);
+        DatasetGenerator second = new DatasetGenerator(spec);
+        assertEquals(first.generateSample(3), second.generateSample(3));
+
+        DatasetSpec otherSeed = new DatasetSpec();
+        otherSeed.setSeed(spec.getSeed() + 1);
+        otherSeed.setViolationRate(0.05d);
+        assertNotEquals(first.generateSample(3), new DatasetGenerator(otherSeed).generateSample(3));
+    }
+
+    @Test
+    public void fileStreamsBackTheGeneratedSamples() throws Exception {
+        DatasetSpec spec = new DatasetSpec();
+        spec.setAnnotations(2000);
+        spec.setViolationRate(0.05d);
+        DatasetGenerator generator = new DatasetGenerator(spec);
+        Path file = folder.getRoot().toPath().resolve("dataset.bin");
+
+        long written = DatasetFile.write(generator, file);
+        assertTrue(written >= 2000);
+        assertTrue(Files.size(file) < 120 * written + 50_000);
+
+        long read = 0;
+        try (DatasetFile.Reader reader = DatasetFile.open(file)) {
+            assertEquals(spec.getSeed(), reader.getSeed());
+            assertEquals(generator.getLibrary().getLipids(), reader.getLibrary().getLipids());
+            List<SyntheticAnnotation> sample;
+            for (int index = 0; (sample = reader.nextSample()) != null; index++) {
+                assertEquals(generator.generateSample(index), sample);
+                read += sample.size();
+            }
+            assertNull(reader.nextSample());
+        }
+        assertEquals(written, read);
+    }
+
+    @Test
+    public void peakGroupsGiveTheExpectedAdduct() {
+        for (IoniationMode mode : IoniationMode.values()) {
+            DatasetSpec spec = new DatasetSpec();
+            spec.setIonizationMode(mode);
+            DatasetGenerator generator = new DatasetGenerator(spec);
+            List<String> expected = new ArrayList<>();
+            List<String> detected = new ArrayList<>();
+            for (SyntheticAnnotation synthetic : generator.generateSample(0)) {
+                Annotation annotation = synthetic.toAnnotation(generator.getLibrary(), mode);
+                expected.add(synthetic.getExpectedAdduct());
+                detected.add(Annotation.detectAdduct(annotation.getMz(), mode, annotation.getSignals()));
+            }
+            assertArrayEquals(mode.toString(), expected.toArray(), detected.toArray());
+            assertTrue(expected.stream().distinct().count() > 2);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package dataset;
+
+import lipid.ElutionOrderModel;
+import lipid.IoniationMode;
+
+/**
+ * Settings of a synthetic dataset. Two datasets generated with the same settings are identical.
+ */
+public class DatasetSpec {
+
+    /**
+     * System property with the number of annotations of the scale suites.
+     */
+    public static final String ANNOTATIONS_PROPERTY = "dataset.annotations";
+
+    private long seed = 42L;
+    private int annotations = 1000;
+    private IoniationMode ionizationMode = IoniationMode.POSITIVE;
+    private ElutionOrderModel elutionOrder = ElutionOrderModel.forMethod(ElutionOrderModel.DEFAULT_METHOD);
+    private int minCarbons = 28;
+    private int maxCarbons = 44;
+    private int maxDoubleBonds = 6;
+    private double presence = 0.9d;
+    private double violationRate = 0d;
+    private double ppmNoise = 2d;
+    private double rtNoise = 0.02d;
+    private double isotopeNoise = 0.05d;
+    private int noisePeaks = 2;
+
+    /**
+     * @return The default settings with the number of annotations of the {@value #ANNOTATIONS_PROPERTY} system
+     * property (1000 when it is not set), so the scale suites run from 10^3 to 10^6 annotations.
+     */
+    public static DatasetSpec fromSystemProperties() {
+        DatasetSpec spec = new DatasetSpec();
+        spec.setAnnotations(Integer.getInteger(ANNOTATIONS_PROPERTY, 1000));
+        return spec;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * @return The minimum number of annotations generated. Whole samples are generated, so the last one can go
+     * over it.
+     */
+    public int getAnnotations() {
+        return annotations;
+    }
+
+    public void setAnnotations(int annotations) {
+        this.annotations = requirePositive(annotations);
+    }
+
+    public IoniationMode getIonizationMode() {
+        return ionizationMode;
+    }
+
+    public void setIonizationMode(IoniationMode ionizationMode) {
+        this.ionizationMode = ionizationMode;
+    }
+
+    /**
+     * @return The elution order followed by the RTs of the annotations that are not violations.
+     */
+    public ElutionOrderModel getElutionOrder() {
+        return elutionOrder;
+    }
+
+    public void setElutionOrder(ElutionOrderModel elutionOrder) {
+        this.elutionOrder = elutionOrder;
+    }
+
+    /**
+     * @return The fewest fatty acyl carbons of the phospholipids. Triacylglycerols have 16 more.
+     */
+    public int getMinCarbons() {
+        return minCarbons;
+    }
+
+    public void setMinCarbons(int minCarbons) {
+        this.minCarbons = requirePositive(minCarbons);
+    }
+
+    public int getMaxCarbons() {
+        return maxCarbons;
+    }
+
+    public void setMaxCarbons(int maxCarbons) {
+        this.maxCarbons = requirePositive(maxCarbons);
+    }
+
+    public int getMaxDoubleBonds() {
+        return maxDoubleBonds;
+    }
+
+    public void setMaxDoubleBonds(int maxDoubleBonds) {
+        this.maxDoubleBonds = maxDoubleBonds;
+    }
+
+    /**
+     * @return The probability that a lipid of the library is present in a sample.
+     */
+    public double getPresence() {
+        return presence;
+    }
+
+    public void setPresence(double presence) {
+        this.presence = presence;
+    }
+
+    /**
+     * @return The probability that the RT of an annotation is moved away from the elution order.
+     */
+    public double getViolationRate() {
+        return violationRate;
+    }
+
+    public void setViolationRate(double violationRate) {
+        this.violationRate = violationRate;
+    }
+
+    /**
+     * @return The maximum m/z error, in ppm, of every peak.
+     */
+    public double getPpmNoise() {
+        return ppmNoise;
+    }
+
+    public void setPpmNoise(double ppmNoise) {
+        this.ppmNoise = ppmNoise;
+    }
+
+    /**
+     * @return The maximum RT error, in minutes, of the annotations that are not violations.
+     */
+    public double getRtNoise() {
+        return rtNoise;
+    }
+
+    public void setRtNoise(double rtNoise) {
+        this.rtNoise = rtNoise;
+    }
+
+    /**
+     * @return The maximum relative error of the intensity of the isotope peaks.
+     */
+    public double getIsotopeNoise() {
+        return isotopeNoise;
+    }
+
+    public void setIsotopeNoise(double isotopeNoise) {
+        this.isotopeNoise = isotopeNoise;
+    }
+
+    /**
+     * @return The number of unrelated peaks added to every peak group.
+     */
+    public int getNoisePeaks() {
+        return noisePeaks;
+    }
+
+    public void setNoisePeaks(int noisePeaks) {
+        this.noisePeaks = noisePeaks;
+    }
+
+    private static int requirePositive(int value) {
+        if (value < 1) {
+            throw new IllegalArgumentException("Value must be at least 1: " + value);
+        }
+        return value;
+    }
+}
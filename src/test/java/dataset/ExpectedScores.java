@@ -0,0 +1,97 @@
+package dataset;
+
+import lipid.ElutionOrderModel;
+import lipid.Lipid;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reference computation of the elution order scores of a sample, written independently of the rules so the
+ * rules can be checked against it at any scale.
+ * <p>
+ * Annotations are bucketed by the two attributes that each rule template keeps equal and every pair of a
+ * bucket is compared once, so the cost is the sum of the squared bucket sizes instead of the square of the
+ * sample size.
+ * </p>
+ */
+public class ExpectedScores {
+
+    private final int[] scores;
+    private final int[] totals;
+
+    public ExpectedScores(List<SyntheticAnnotation> sample, LipidLibrary library, ElutionOrderModel model) {
+        this.scores = new int[sample.size()];
+        this.totals = new int[sample.size()];
+        Lipid[] lipids = new Lipid[sample.size()];
+        double[] rts = new double[sample.size()];
+        for (int i = 0; i < lipids.length; i++) {
+            lipids[i] = library.get(sample.get(i).getLipidIndex());
+            rts[i] = sample.get(i).getRtMin();
+        }
+
+        int[] carbons = new int[lipids.length];
+        int[] doubleBonds = new int[lipids.length];
+        int[] orders = new int[lipids.length];
+        long[] byTypeAndDoubleBonds = new long[lipids.length];
+        long[] byTypeAndCarbons = new long[lipids.length];
+        long[] byCarbonsAndDoubleBonds = new long[lipids.length];
+        for (int i = 0; i < lipids.length; i++) {
+            Lipid lipid = lipids[i];
+            carbons[i] = lipid.getCarbonCount();
+            doubleBonds[i] = lipid.getDoubleBondsCount();
+            orders[i] = model.getLipidTypeOrder(lipid.getLipidType());
+            byTypeAndDoubleBonds[i] = key(lipid.getLipidType().ordinal(), doubleBonds[i]);
+            byTypeAndCarbons[i] = key(lipid.getLipidType().ordinal(), carbons[i]);
+            byCarbonsAndDoubleBonds[i] = key(carbons[i], doubleBonds[i]);
+        }
+        compare(byTypeAndDoubleBonds, carbons, rts, model.getCarbonCountDirection());
+        compare(byTypeAndCarbons, doubleBonds, rts, model.getDoubleBondsDirection());
+        compare(byCarbonsAndDoubleBonds, orders, rts, model.getLipidTypeDirection());
+    }
+
+    public int getScore(int index) {
+        return scores[index];
+    }
+
+    public int getTotalScoresApplied(int index) {
+        return totals[index];
+    }
+
+    /**
+     * @return The score divided by the number of scores applied, as {@link lipid.Annotation#getNormalizedScore()}.
+     */
+    public int getNormalizedScore(int index) {
+        return totals[index] == 0 ? 0 : scores[index] / totals[index];
+    }
+
+    private void compare(long[] keys, int[] attribute, double[] rts, int direction) {
+        if (direction == 0) return;
+        Map<Long, List<Integer>> buckets = new HashMap<>();
+        for (int i = 0; i < keys.length; i++) {
+            buckets.computeIfAbsent(keys[i], key -> new ArrayList<>()).add(i);
+        }
+        for (List<Integer> bucket : buckets.values()) {
+            for (int x = 0; x < bucket.size(); x++) {
+                for (int y = x + 1; y < bucket.size(); y++) {
+                    int i = bucket.get(x);
+                    int j = bucket.get(y);
+                    if (attribute[i] == attribute[j] || rts[i] == rts[j]) continue;
+                    int larger = attribute[i] > attribute[j] ? i : j;
+                    int smaller = larger == i ? j : i;
+                    int score = direction * (rts[larger] > rts[smaller] ? 1 : -1);
+                    scores[i] += score;
+                    scores[j] += score;
+                    totals[i]++;
+                    totals[j]++;
+                }
+            }
+        }
+    }
+
+    private static long key(int first, int second) {
+        return ((long) first << 32) | (second & 0xFFFFFFFFL);
+    }
+}
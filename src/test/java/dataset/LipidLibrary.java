@@ -0,0 +1,79 @@
+package dataset;
+
+import lipid.Formula;
+import lipid.Lipid;
+import lipid.LipidType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The lipids of a synthetic dataset: every {@link LipidType} with a ladder of even fatty acyl carbon counts and
+ * double bonds. The formula of each lipid is built from the head group of its class.
+ */
+public class LipidLibrary {
+
+    private final List<Lipid> lipids;
+    private final double[] masses;
+
+    public LipidLibrary(DatasetSpec spec) {
+        this(ladders(spec));
+    }
+
+    public LipidLibrary(List<Lipid> lipids) {
+        this.lipids = Collections.unmodifiableList(new ArrayList<>(lipids));
+        this.masses = new double[lipids.size()];
+        for (int i = 0; i < masses.length; i++) {
+            masses[i] = Formula.parse(lipids.get(i).getFormula()).getMonoisotopicMass();
+        }
+    }
+
+    private static List<Lipid> ladders(DatasetSpec spec) {
+        List<Lipid> lipidsTMP = new ArrayList<>();
+        for (LipidType type : LipidType.values()) {
+            // triacylglycerols have a third fatty acyl chain
+            int offset = type == LipidType.TG ? 16 : 0;
+            for (int carbons = spec.getMinCarbons() + offset; carbons <= spec.getMaxCarbons() + offset; carbons += 2) {
+                for (int doubleBonds = 0; doubleBonds <= spec.getMaxDoubleBonds(); doubleBonds++) {
+                    lipidsTMP.add(new Lipid(lipidsTMP.size() + 1, type + " " + carbons + ":" + doubleBonds,
+                            formula(type, carbons, doubleBonds), type, carbons, doubleBonds));
+                }
+            }
+        }
+        return lipidsTMP;
+    }
+
+    /**
+     * @return The formula of a diacyl phospholipid or a triacylglycerol with {@code carbons} fatty acyl carbons.
+     */
+    static String formula(LipidType type, int carbons, int doubleBonds) {
+        int hydrogens = 2 * carbons - 2 * doubleBonds;
+        switch (type) {
+            case PC: return "C" + (carbons + 8) + "H" + (hydrogens + 16) + "NO8P";
+            case PE: return "C" + (carbons + 5) + "H" + (hydrogens + 10) + "NO8P";
+            case PI: return "C" + (carbons + 9) + "H" + (hydrogens + 15) + "O13P";
+            case PG: return "C" + (carbons + 6) + "H" + (hydrogens + 11) + "O10P";
+            case PA: return "C" + (carbons + 3) + "H" + (hydrogens + 5) + "O8P";
+            case PS: return "C" + (carbons + 6) + "H" + (hydrogens + 10) + "NO10P";
+            case TG: return "C" + (carbons + 3) + "H" + (hydrogens + 2) + "O6";
+            default: throw new IllegalArgumentException("No formula for " + type);
+        }
+    }
+
+    public int size() {
+        return lipids.size();
+    }
+
+    public Lipid get(int index) {
+        return lipids.get(index);
+    }
+
+    public double getMass(int index) {
+        return masses[index];
+    }
+
+    public List<Lipid> getLipids() {
+        return lipids;
+    }
+}
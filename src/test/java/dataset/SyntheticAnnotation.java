@@ -0,0 +1,116 @@
+package dataset;
+
+import lipid.Annotation;
+import lipid.IoniationMode;
+import lipid.Peak;
+import lipid.SignalGroup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A generated annotation together with what is known about it: its true adduct and whether its RT was moved
+ * away from the elution order.
+ */
+public class SyntheticAnnotation {
+
+    private final int sample;
+    private final int lipidIndex;
+    private final double mz;
+    private final double intensity;
+    private final double rtMin;
+    private final double[] peakMzs;
+    private final double[] peakIntensities;
+    private final String expectedAdduct;
+    private final boolean violation;
+
+    public SyntheticAnnotation(int sample, int lipidIndex, double mz, double intensity, double rtMin, double[] peakMzs,
+                               double[] peakIntensities, String expectedAdduct, boolean violation) {
+        this.sample = sample;
+        this.lipidIndex = lipidIndex;
+        this.mz = mz;
+        this.intensity = intensity;
+        this.rtMin = rtMin;
+        this.peakMzs = peakMzs;
+        this.peakIntensities = peakIntensities;
+        this.expectedAdduct = expectedAdduct;
+        this.violation = violation;
+    }
+
+    public int getSample() {
+        return sample;
+    }
+
+    /**
+     * @return The index of the lipid in the {@link LipidLibrary} of the dataset.
+     */
+    public int getLipidIndex() {
+        return lipidIndex;
+    }
+
+    public double getMz() {
+        return mz;
+    }
+
+    public double getIntensity() {
+        return intensity;
+    }
+
+    public double getRtMin() {
+        return rtMin;
+    }
+
+    public int getPeakCount() {
+        return peakMzs.length;
+    }
+
+    public double getPeakMz(int index) {
+        return peakMzs[index];
+    }
+
+    public double getPeakIntensity(int index) {
+        return peakIntensities[index];
+    }
+
+    /**
+     * @return The adduct that {@link Annotation#detectAdduct} must find in the peaks, or {@code null} when the
+     * group has no second adduct.
+     */
+    public String getExpectedAdduct() {
+        return expectedAdduct;
+    }
+
+    /**
+     * @return Whether the RT was moved away from the elution order of the dataset.
+     */
+    public boolean isViolation() {
+        return violation;
+    }
+
+    public Annotation toAnnotation(LipidLibrary library, IoniationMode ionizationMode) {
+        List<Peak> peaks = new ArrayList<>(peakMzs.length);
+        for (int i = 0; i < peakMzs.length; i++) {
+            peaks.add(new Peak(peakMzs[i], peakIntensities[i]));
+        }
+        return new Annotation(library.get(lipidIndex), mz, intensity, rtMin, ionizationMode, SignalGroup.of(peaks));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof SyntheticAnnotation)) return false;
+        SyntheticAnnotation that = (SyntheticAnnotation) o;
+        return sample == that.sample && lipidIndex == that.lipidIndex && Double.compare(that.mz, mz) == 0
+                && Double.compare(that.intensity, intensity) == 0 && Double.compare(that.rtMin, rtMin) == 0
+                && violation == that.violation && Arrays.equals(peakMzs, that.peakMzs)
+                && Arrays.equals(peakIntensities, that.peakIntensities)
+                && Objects.equals(expectedAdduct, that.expectedAdduct);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * sample + lipidIndex) + Double.hashCode(rtMin);
+    }
+}
@@ -0,0 +1,122 @@
+package dataset;
+
+import lipid.Annotation;
+import lipid.LipidScoreUnit;
+import lipid.RtRegressionScorer;
+import org.drools.ruleunits.api.DataSource;
+import org.drools.ruleunits.api.RuleUnitInstance;
+import org.drools.ruleunits.api.RuleUnitProvider;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Correctness and performance of the scorers on a synthetic dataset streamed from a file. The number of
+ * annotations is set with {@code -Ddataset.annotations} (1000 by default), from 10^3 to 10^6.
+ */
+public class SyntheticDatasetScaleTest {
+
+    static final Logger LOG = LoggerFactory.getLogger(SyntheticDatasetScaleTest.class);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void scoresMatchTheExpectedScores() throws Exception {
+        DatasetSpec spec = DatasetSpec.fromSystemProperties();
+        spec.setViolationRate(0.02d);
+        Path file = folder.getRoot().toPath().resolve("dataset.bin");
+        long start = System.nanoTime();
+        long annotations = DatasetFile.write(new DatasetGenerator(spec), file);
+        long writeMillis = (System.nanoTime() - start) / 1_000_000;
+
+        long rulesNanos = 0;
+        long regressionNanos = 0;
+        int violations = 0;
+        int flaggedViolations = 0;
+        int flaggedRegular = 0;
+        int adductErrors = 0;
+        try (DatasetFile.Reader reader = DatasetFile.open(file)) {
+            List<SyntheticAnnotation> sample;
+            while ((sample = reader.nextSample()) != null) {
+                LipidLibrary library = reader.getLibrary();
+                List<Annotation> scored = new ArrayList<>(sample.size());
+                for (SyntheticAnnotation synthetic : sample) {
+                    scored.add(synthetic.toAnnotation(library, reader.getIonizationMode()));
+                }
+                Annotation.detectAll(scored);
+                for (int i = 0; i < scored.size(); i++) {
+                    if (!Objects.equals(sample.get(i).getExpectedAdduct(), scored.get(i).getAdduct())) adductErrors++;
+                }
+
+                long rulesStart = System.nanoTime();
+                LipidScoreUnit unit = new LipidScoreUnit(DataSource.createStore(), spec.getElutionOrder());
+                RuleUnitInstance<LipidScoreUnit> instance = RuleUnitProvider.get().createRuleUnitInstance(unit);
+                try {
+                    for (Annotation annotation : scored) {
+                        unit.getAnnotations().add(annotation);
+                    }
+                    instance.fire();
+                } finally {
+                    instance.close();
+                }
+                rulesNanos += System.nanoTime() - rulesStart;
+
+                ExpectedScores expected = new ExpectedScores(sample, library, spec.getElutionOrder());
+                for (int i = 0; i < scored.size(); i++) {
+                    assertEquals(expected.getScore(i), scored.get(i).getScore());
+                    assertEquals(expected.getNormalizedScore(i), scored.get(i).getNormalizedScore());
+                }
+
+                long regressionStart = System.nanoTime();
+                RtRegressionScorer regression = new RtRegressionScorer();
+                for (Annotation annotation : scored) {
+                    regression.add(annotation);
+                }
+                double[] residuals = new double[scored.size()];
+                for (int i = 0; i < residuals.length; i++) {
+                    residuals[i] = regression.standardizedResidual(scored.get(i));
+                }
+                regressionNanos += System.nanoTime() - regressionStart;
+                for (int i = 0; i < residuals.length; i++) {
+                    boolean flagged = Math.abs(residuals[i]) > 3d;
+                    if (sample.get(i).isViolation()) {
+                        violations++;
+                        if (flagged) flaggedViolations++;
+                    } else if (flagged) {
+                        flaggedRegular++;
+                    }
+                }
+            }
+        }
+
+        LOG.info("{} annotations: written in {} ms, rules {} ms, regression {} ms; regression flagged {}/{} violations and {} regular annotations",
+                annotations, writeMillis, rulesNanos / 1_000_000, regressionNanos / 1_000_000, flaggedViolations,
+                violations, flaggedRegular);
+        assertEquals(0, adductErrors);
+        // groups where a third of the ladder was moved cannot be told apart from a shifted ladder
+        assertTrue(flaggedViolations >= 0.98d * violations);
+        assertTrue(flaggedRegular <= annotations / 100);
+    }
+
+    @Test
+    public void orderedDatasetScoresOne() {
+        DatasetSpec spec = new DatasetSpec();
+        DatasetGenerator generator = new DatasetGenerator(spec);
+        List<SyntheticAnnotation> sample = generator.generateSample(0);
+        ExpectedScores expected = new ExpectedScores(sample, generator.getLibrary(), spec.getElutionOrder());
+        for (int i = 0; i < sample.size(); i++) {
+            assertEquals(1, expected.getNormalizedScore(i));
+        }
+    }
+}
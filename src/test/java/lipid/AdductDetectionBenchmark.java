@@ -0,0 +1,78 @@
+package lipid;
+
+import adduct.Adduct;
+import adduct.AdductList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Compares the time of the imperative adduct detection with the rule-based one, in one session and in one
+ * session per core, on random runs of increasing size. It is not a unit test (surefire does not run it), so
+ * that the build does not depend on timings; run its {@code main} from the test classpath:
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=cp.txt
+ * java -cp target/test-classes:target/classes:$(cat cp.txt) lipid.AdductDetectionBenchmark [groups...]
+ * </pre>
+ * Every measure is the best of 5 runs, after a warm-up.
+ */
+public class AdductDetectionBenchmark {
+
+    private static final int RUNS = 5;
+
+    public static void main(String[] args) {
+        int[] sizes = args.length == 0 ? new int[]{1_000, 2_000, 5_000} : new int[args.length];
+        for (int i = 0; i < args.length; i++) {
+            sizes[i] = Integer.parseInt(args[i]);
+        }
+        int cores = Runtime.getRuntime().availableProcessors();
+        RuleAdductDetector single = new RuleAdductDetector(10, 1);
+        RuleAdductDetector partitioned = new RuleAdductDetector(10, cores);
+
+        System.out.printf("%10s %12s %12s %16s%n", "groups", "imperative", "rules", "rules x " + cores);
+        for (int groups : sizes) {
+            double[] mzs = new double[groups];
+            IoniationMode[] modes = new IoniationMode[groups];
+            SignalGroup[] signals = new SignalGroup[groups];
+            randomRun(new Random(groups), mzs, modes, signals);
+
+            long imperative = bestOf(() -> {
+                for (int i = 0; i < groups; i++) {
+                    Annotation.detectAdduct(mzs[i], modes[i], signals[i]);
+                }
+            });
+            long rules = bestOf(() -> single.detect(mzs, modes, signals));
+            long rulesPartitioned = bestOf(() -> partitioned.detect(mzs, modes, signals));
+            System.out.printf("%10d %9d ms %9d ms %13d ms%n", groups, imperative, rules, rulesPartitioned);
+        }
+    }
+
+    /**
+     * Fills a run of groups with two adducts of a random mass each.
+     */
+    static void randomRun(Random random, double[] mzs, IoniationMode[] modes, SignalGroup[] signals) {
+        List<Map.Entry<String, Double>> adducts = new ArrayList<>(AdductList.MAPMZPOSITIVEADDUCTS.entrySet());
+        for (int i = 0; i < mzs.length; i++) {
+            double mass = 500 + random.nextDouble() * 500;
+            double mz1 = Adduct.getMZFromMonoisotopicMass(mass, adducts.get(random.nextInt(adducts.size())));
+            double mz2 = Adduct.getMZFromMonoisotopicMass(mass, adducts.get(random.nextInt(adducts.size())));
+            mzs[i] = mz1;
+            modes[i] = IoniationMode.POSITIVE;
+            signals[i] = SignalGroup.of(Set.of(new Peak(mz1, 1000), new Peak(mz2 + 0.0001, 800)));
+        }
+    }
+
+    private static long bestOf(Runnable detection) {
+        detection.run();
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            detection.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best / 1_000_000;
+    }
+}
@@ -0,0 +1,130 @@
+package lipid;
+
+import adduct.Adduct;
+import adduct.AdductList;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AdductTableTest {
+
+    static final Logger LOG = LoggerFactory.getLogger(AdductTableTest.class);
+
+    private static final Lipid LIPID = new Lipid(1, "PC 34:1", "C42H82NO8P", LipidType.PC, 34, 1);
+
+    /**
+     * The table gives the same adducts as converting the m/z to a mass and back for every adduct pair.
+     */
+    @Test
+    public void tableMatchesTheMassConversions() {
+        Random random = new Random(11);
+        for (IoniationMode mode : IoniationMode.values()) {
+            Map<String, Double> adductMap = mode == IoniationMode.POSITIVE ? AdductList.MAPMZPOSITIVEADDUCTS : AdductList.MAPMZNEGATIVEADDUCTS;
+            List<Map.Entry<String, Double>> adducts = new ArrayList<>(adductMap.entrySet());
+            int detected = 0;
+            for (int i = 0; i < 5000; i++) {
+                double mass = 500d + 500d * random.nextDouble();
+                double baseMz = Adduct.getMZFromMonoisotopicMass(mass, adducts.get(random.nextInt(adducts.size())));
+                // a real second adduct half of the time, an unrelated peak otherwise
+                double otherMz = random.nextBoolean()
+                        ? Adduct.getMZFromMonoisotopicMass(mass, adducts.get(random.nextInt(adducts.size()))) * (1 + (random.nextDouble() - 0.5) * 1e-5)
+                        : baseMz + (random.nextDouble() - 0.5) * 100d;
+                SignalGroup signals = SignalGroup.of(Set.of(new Peak(baseMz, 1000d), new Peak(otherMz, 500d)));
+
+                String expected = Math.abs(otherMz - baseMz) < 0.01 ? null : massConversions(baseMz, otherMz, adductMap);
+                String actual = Math.abs(otherMz - baseMz) < 0.01 ? null : AdductList.getAdductName(AdductTable.of(mode).detect(baseMz, signals));
+                assertEquals(expected, actual);
+                if (expected != null) detected++;
+            }
+            LOG.info("{}: {} of 5000 groups with an adduct", mode, detected);
+        }
+    }
+
+    @Test
+    public void setAdductKeepsTheDetectedAdduct() {
+        Annotation annotation = new Annotation(LIPID, 700.49999d, 80000.0, 6.5d, IoniationMode.POSITIVE,
+                Set.of(new Peak(700.500, 100000.0), new Peak(722.482, 80000.0)));
+        annotation.setAdduct("[M+Na]+");
+        assertTrue(annotation.toString().contains("detectedAdduct=not detected, matchedAdduct='[M+Na]+'"));
+        assertEquals("[M+Na]+", annotation.getMatchedAdduct());
+        assertEquals("[M+H]+", annotation.getAdduct());
+        assertTrue(annotation.toString().contains("detectedAdduct='[M+H]+'"));
+        annotation.setDetectedAdduct(null);
+        assertNull(annotation.getAdduct());
+        assertEquals("[M+Na]+", annotation.getMatchedAdduct());
+    }
+
+    @Test
+    public void detectAllMatchesTheLazyDetection() throws Exception {
+        Random random = new Random(5);
+        List<Annotation> batch = new ArrayList<>();
+        List<Annotation> lazy = new ArrayList<>();
+        for (int g = 0; g < 2000; g++) {
+            double mz = 600d + 400d * random.nextDouble();
+            // [M+H]+ with [M+Na]+, [M+H-H2O]+ or an unrelated peak
+            double[] others = {mz + 21.981942, mz - 18.010476, mz + 5.5};
+            SignalGroup signals = SignalGroup.of(Set.of(new Peak(mz, 1000d), new Peak(others[g % 3], 500d)));
+            for (int c = 0; c < 5; c++) {
+                batch.add(new Annotation(LIPID, mz, 1000d, 5d, IoniationMode.POSITIVE, signals));
+                lazy.add(new Annotation(LIPID, mz, 1000d, 5d, IoniationMode.POSITIVE, signals));
+            }
+        }
+        Annotation recorded = batch.get(0);
+        recorded.setDetectedAdduct("[M+K]+");
+
+        Annotation.detectAll(batch);
+
+        // the lazy detection, triggered from several threads at once
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<String>>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(executor.submit(() -> {
+                    List<String> adducts = new ArrayList<>();
+                    for (Annotation annotation : lazy) adducts.add(annotation.getAdduct());
+                    return adducts;
+                }));
+            }
+            for (Future<List<String>> future : futures) {
+                List<String> adducts = future.get();
+                for (int i = 1; i < batch.size(); i++) {
+                    assertEquals(adducts.get(i), batch.get(i).getAdduct());
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals("[M+K]+", recorded.getAdduct());
+        assertEquals("[M+H]+", batch.get(5).getAdduct());
+        assertNull(batch.get(10).getAdduct());
+    }
+
+    /**
+     * The original detection, with a mass conversion per adduct pair.
+     */
+    private static String massConversions(double baseMz, double otherMz, Map<String, Double> adductMap) {
+        for (Map.Entry<String, Double> adduct1 : adductMap.entrySet()) {
+            Double mass = Adduct.getMonoisotopicMassFromMZ(baseMz, adduct1);
+            for (Map.Entry<String, Double> adduct2 : adductMap.entrySet()) {
+                if (adduct1.getKey().equals(adduct2.getKey())) continue;
+                if (Adduct.calculatePPMIncrement(otherMz, Adduct.getMZFromMonoisotopicMass(mass, adduct2)) <= 10) {
+                    return adduct1.getKey();
+                }
+            }
+        }
+        return null;
+    }
+}
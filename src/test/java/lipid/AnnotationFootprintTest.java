@@ -0,0 +1,98 @@
+package lipid;
+
+import org.junit.Test;
+import org.openjdk.jol.info.GraphLayout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Measures the memory retained per candidate annotation with JOL. Lipids are shared by both layouts and
+ * are excluded from the measure.
+ */
+public class AnnotationFootprintTest {
+
+    static final Logger LOG = LoggerFactory.getLogger(AnnotationFootprintTest.class);
+
+    private static final int GROUPS = 100;
+    private static final int CANDIDATES_PER_GROUP = 10;
+
+    @Test
+    public void annotationShouldTakeLessThanHalfOfThePreviousLayout() {
+        List<Lipid> lipids = new ArrayList<>();
+        for (int i = 0; i < CANDIDATES_PER_GROUP; i++) {
+            lipids.add(new Lipid(i, "TG 54:3", "C57H104O6", LipidType.TG, 54, 3));
+        }
+
+        List<Annotation> annotations = new ArrayList<>();
+        List<LegacyAnnotation> legacyAnnotations = new ArrayList<>();
+        for (int g = 0; g < GROUPS; g++) {
+            double mz = 700.5 + g;
+            Set<Peak> peaks = Set.of(new Peak(mz, 100000.0), new Peak(mz + 21.981943, 80000.0), new Peak(mz + 1.00335, 40000.0));
+            SignalGroup signals = SignalGroup.of(peaks);
+            for (Lipid lipid : lipids) {
+                annotations.add(new Annotation(lipid, mz, 100000.0, 6.5d, IoniationMode.POSITIVE, signals));
+                legacyAnnotations.add(new LegacyAnnotation(lipid, mz, 100000.0, 6.5d, IoniationMode.POSITIVE, peaks, "[M+H]+"));
+            }
+        }
+
+        long lipidsSize = GraphLayout.parseInstance(lipids.toArray()).totalSize();
+        long perAnnotation = (GraphLayout.parseInstance(annotations.toArray()).totalSize() - lipidsSize) / annotations.size();
+        long perLegacyAnnotation = (GraphLayout.parseInstance(legacyAnnotations.toArray()).totalSize() - lipidsSize) / legacyAnnotations.size();
+        LOG.info("Bytes per annotation: {} (previous layout: {})", perAnnotation, perLegacyAnnotation);
+
+        assertTrue(perAnnotation + " bytes vs " + perLegacyAnnotation, perAnnotation * 2 < perLegacyAnnotation);
+    }
+
+    @Test
+    public void groupedSignalsAreBuiltOncePerGroup() {
+        SignalGroup signals = SignalGroup.of(Set.of(new Peak(700.5, 100000.0), new Peak(722.48, 80000.0)));
+        Annotation first = new Annotation(new Lipid(1, "TG 54:3", "C57H104O6", LipidType.TG, 54, 3), 700.5, 100000.0, 6.5d, IoniationMode.POSITIVE, signals);
+        Annotation second = new Annotation(new Lipid(2, "TG 52:3", "C55H100O6", LipidType.TG, 52, 3), 700.5, 100000.0, 6.5d, IoniationMode.POSITIVE, signals);
+
+        assertSame(first.getGroupedSignals(), first.getGroupedSignals());
+        assertSame(first.getGroupedSignals(), second.getGroupedSignals());
+        assertEquals(new TreeSet<>(Set.of(new Peak(700.5, 100000.0), new Peak(722.48, 80000.0))), first.getGroupedSignals());
+        try {
+            first.getGroupedSignals().clear();
+            fail();
+        } catch (UnsupportedOperationException expected) {
+            assertEquals(2, first.getGroupedSignals().size());
+        }
+    }
+
+    /**
+     * Field layout of Annotation before adducts were stored as ids and signals were shared.
+     */
+    @SuppressWarnings("unused")
+    private static class LegacyAnnotation {
+        private final Lipid lipid;
+        private final double mz;
+        private final double intensity;
+        private final double rtMin;
+        private final IoniationMode ionizationMode;
+        private String adduct;
+        private final Set<Peak> groupedSignals;
+        private int score;
+        private int totalScoresApplied;
+
+        LegacyAnnotation(Lipid lipid, double mz, double intensity, double rtMin, IoniationMode ionizationMode, Set<Peak> groupedSignals, String adduct) {
+            this.lipid = lipid;
+            this.mz = mz;
+            this.intensity = intensity;
+            this.rtMin = rtMin;
+            this.ionizationMode = ionizationMode;
+            this.groupedSignals = new TreeSet<>(groupedSignals);
+            this.adduct = adduct;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package lipid;
+
+import org.drools.ruleunits.api.DataSource;
+import org.drools.ruleunits.api.RuleUnitInstance;
+import org.drools.ruleunits.api.RuleUnitProvider;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class ElutionOrderModelTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void defaultMethodKeepsTheClassOrder() {
+        ElutionOrderModel model = ElutionOrderModel.forMethod(ElutionOrderModel.DEFAULT_METHOD);
+        assertEquals(1, model.getLipidTypeOrder(LipidType.PG));
+        assertEquals(2, model.getLipidTypeOrder(LipidType.PE));
+        assertEquals(3, model.getLipidTypeOrder(LipidType.PI));
+        assertEquals(4, model.getLipidTypeOrder(LipidType.PA));
+        assertEquals(5, model.getLipidTypeOrder(LipidType.PS));
+        assertEquals(10, model.getLipidTypeOrder(LipidType.TG));
+        assertEquals(100, model.getLipidTypeOrder(LipidType.PC));
+        assertEquals(1, model.getCarbonCountDirection());
+        assertEquals(-1, model.getDoubleBondsDirection());
+        assertEquals(1, model.getLipidTypeDirection());
+        assertSame(model, ElutionOrderModel.forMethod(ElutionOrderModel.DEFAULT_METHOD));
+    }
+
+    @Test
+    public void unlistedClassesGetTheDefaultOrder() {
+        Properties properties = new Properties();
+        properties.setProperty("order.PC", "2");
+        properties.setProperty("order.default", "7");
+        ElutionOrderModel model = ElutionOrderModel.compile("test", properties);
+        assertEquals(2, model.getLipidTypeOrder(LipidType.PC));
+        assertEquals(7, model.getLipidTypeOrder(LipidType.TG));
+        assertEquals(0, model.getCarbonCountDirection());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownClassIsRejected() {
+        Properties properties = new Properties();
+        properties.setProperty("order.XX", "1");
+        ElutionOrderModel.compile("test", properties);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidDirectionIsRejected() {
+        Properties properties = new Properties();
+        properties.setProperty("template.carbonCount", "sideways");
+        ElutionOrderModel.compile("test", properties);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownMethodIsRejected() {
+        ElutionOrderModel.forMethod("no-such-method");
+    }
+
+    /**
+     * The same annotations that the default method scores positively are scored negatively by a method that
+     * reverses the class order, without any change in the rules.
+     */
+    @Test
+    public void reversedMethodReversesTheClassScores() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("reversed.properties");
+        Files.writeString(file, "order.PG=3\norder.PI=2\norder.PC=1\ntemplate.lipidType=later\n");
+        ElutionOrderModel reversed = ElutionOrderModel.load(file);
+        assertEquals("reversed", reversed.getMethod());
+
+        Annotation[] annotations = scoreClasses(ElutionOrderModel.forMethod(ElutionOrderModel.DEFAULT_METHOD));
+        for (Annotation annotation : annotations) {
+            assertEquals(1.0, annotation.getNormalizedScore(), 0.01);
+        }
+        annotations = scoreClasses(reversed);
+        for (Annotation annotation : annotations) {
+            assertEquals(-1.0, annotation.getNormalizedScore(), 0.01);
+        }
+    }
+
+    private static Annotation[] scoreClasses(ElutionOrderModel model) {
+        Annotation[] annotations = {
+                new Annotation(new Lipid(1, "PI 34:0", "C43H83O13P", LipidType.PI, 34, 0), 839.56441, 10E6, 10d, IoniationMode.POSITIVE),
+                new Annotation(new Lipid(2, "PG 34:0", "C40H79O10P", LipidType.PG, 34, 0), 751.54836, 10E7, 9d, IoniationMode.POSITIVE),
+                new Annotation(new Lipid(3, "PC 34:0", "C42H84NO8P", LipidType.PC, 34, 0), 762.60073, 10E5, 11d, IoniationMode.POSITIVE)
+        };
+        LipidScoreUnit unit = new LipidScoreUnit(DataSource.createStore(), model);
+        RuleUnitInstance<LipidScoreUnit> instance = RuleUnitProvider.get().createRuleUnitInstance(unit);
+        try {
+            for (Annotation annotation : annotations) {
+                unit.getAnnotations().add(annotation);
+            }
+            instance.fire();
+        } finally {
+            instance.close();
+        }
+        return annotations;
+    }
+}
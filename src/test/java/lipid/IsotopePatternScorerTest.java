@@ -0,0 +1,118 @@
+package lipid;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class IsotopePatternScorerTest {
+
+    private IsotopePatternScorer scorer;
+    private Lipid lipid;
+
+    @Before
+    public void setup() {
+        scorer = new IsotopePatternScorer();
+        lipid = new Lipid(1, "TG 54:3", "C57H104O6", LipidType.TG, 54, 3); // MZ of [M+H]+ = 885.79057
+    }
+
+    @Test
+    public void shouldPredictAndCachePatternPerFormula() {
+        IsotopePattern pattern = scorer.predict("C57H104O6");
+        // dominated by 57 carbons with a 1.07% chance of being 13C
+        assertEquals(0.631, pattern.getRelativeAbundanceM1(), 0.005);
+        assertEquals(0.211, pattern.getRelativeAbundanceM2(), 0.005);
+        assertSame(pattern, scorer.predict("C57H104O6"));
+    }
+
+    @Test
+    public void shouldScorePositiveWhenIsotopesFit() {
+        Peak m = new Peak(885.79057, 100000.0);
+        Peak m1 = new Peak(886.79392, 62000.0);
+        Peak m2 = new Peak(887.79728, 21500.0);
+        Annotation annotation = new Annotation(lipid, m.getMz(), m.getIntensity(), 10d, IoniationMode.POSITIVE, Set.of(m, m1, m2));
+
+        double fit = scorer.score(annotation);
+
+        assertTrue("Fit was " + fit, fit > 0.9);
+        assertEquals(1, annotation.getScore());
+        assertEquals(1, annotation.getNormalizedScore());
+    }
+
+    @Test
+    public void shouldSpaceTheIsotopesByTheChargeOfTheMatchedAdduct() {
+        // [M+2H]2+ of TG 54:3, with its isotopes 0.5 apart
+        Peak m = new Peak(443.39893, 100000.0);
+        Peak m1 = new Peak(443.90061, 62000.0);
+        Peak m2 = new Peak(444.40228, 21500.0);
+        Annotation annotation = new Annotation(lipid, m.getMz(), m.getIntensity(), 10d, IoniationMode.POSITIVE, Set.of(m, m1, m2));
+        annotation.setAdduct("[M+2H]2+");
+
+        double fit = scorer.fit(annotation);
+
+        assertTrue("Fit was " + fit, fit > 0.9);
+    }
+
+    @Test
+    public void shouldScoreNegativeWhenIsotopesDoNotFit() {
+        // an M+1 of 10% points to a compound with far fewer carbons than TG 54:3
+        Peak m = new Peak(885.79057, 100000.0);
+        Peak m1 = new Peak(886.79392, 10000.0);
+        Annotation annotation = new Annotation(lipid, m.getMz(), m.getIntensity(), 10d, IoniationMode.POSITIVE, Set.of(m, m1));
+
+        assertEquals(0d, scorer.score(annotation), 0.0);
+        assertEquals(-1, annotation.getNormalizedScore());
+    }
+
+    @Test
+    public void shouldScoreAgainstTheAcceptanceThreshold() {
+        double predicted = scorer.predict("C57H104O6").getRelativeAbundanceM1();
+        // with only M+1 observed, fit = 1 - relative error / 0.3, so the default threshold of 0.5 is a 15% error
+        assertEquals(1, scoreWithM1(scorer, predicted * 1.14));
+        assertEquals(-1, scoreWithM1(scorer, predicted * 1.16));
+        assertEquals(1, scoreWithM1(scorer, predicted * 0.86));
+        assertEquals(-1, scoreWithM1(scorer, predicted * 0.84));
+        // a fit close to 0 is a mismatched envelope, not a weak match
+        assertEquals(-1, scoreWithM1(scorer, predicted * 1.297));
+
+        IsotopePatternScorer strict = new IsotopePatternScorer(10, 0.3d, 0.8d);
+        assertEquals(1, scoreWithM1(strict, predicted * 1.05));
+        assertEquals(-1, scoreWithM1(strict, predicted * 1.07));
+    }
+
+    @Test
+    public void shouldStoreTheFitInTheAnnotation() {
+        Peak m = new Peak(885.79057, 100000.0);
+        Peak m1 = new Peak(886.79392, 62000.0);
+        Annotation annotation = new Annotation(lipid, m.getMz(), m.getIntensity(), 10d, IoniationMode.POSITIVE, Set.of(m, m1));
+        assertFalse(annotation.hasIsotopeFit());
+
+        double fit = scorer.score(annotation);
+
+        assertTrue(annotation.hasIsotopeFit());
+        assertEquals(fit, annotation.getIsotopeFit(), 1e-6);
+    }
+
+    @Test
+    public void shouldNotScoreWithoutIsotopePeaks() {
+        Annotation annotation = new Annotation(lipid, 885.79057, 100000.0, 10d, IoniationMode.POSITIVE);
+
+        assertTrue(Double.isNaN(scorer.score(annotation)));
+        assertEquals(0, annotation.getNormalizedScore());
+        assertTrue(annotation.hasIsotopeFit());
+        assertTrue(Double.isNaN(annotation.getIsotopeFit()));
+    }
+
+    private int scoreWithM1(IsotopePatternScorer isotopeScorer, double relativeAbundanceM1) {
+        Peak m = new Peak(885.79057, 100000.0);
+        Peak m1 = new Peak(886.79392, 100000.0 * relativeAbundanceM1);
+        Annotation annotation = new Annotation(lipid, m.getMz(), m.getIntensity(), 10d, IoniationMode.POSITIVE, Set.of(m, m1));
+        isotopeScorer.score(annotation);
+        return annotation.getScore();
+    }
+}
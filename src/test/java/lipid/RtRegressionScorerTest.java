@@ -0,0 +1,89 @@
+package lipid;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RtRegressionScorerTest {
+
+    private static Annotation annotation(int id, LipidType type, int carbons, int doubleBonds, double rtMin) {
+        Lipid lipid = new Lipid(id, type + " " + carbons + ":" + doubleBonds, "C57H104O6", type, carbons, doubleBonds);
+        return new Annotation(lipid, 800d + id, 1E6, rtMin, IoniationMode.POSITIVE);
+    }
+
+    @Test
+    public void robustFitIgnoresTheOutlier() {
+        List<Annotation> annotations = new ArrayList<>();
+        for (int carbons = 48; carbons <= 60; carbons += 2) {
+            double noise = carbons % 4 == 0 ? 0.01d : -0.01d;
+            annotations.add(annotation(carbons, LipidType.TG, carbons, 3, 0.5d * carbons - 15d + noise));
+        }
+        Annotation outlier = annotation(100, LipidType.TG, 54, 3, 0.5d * 54 - 15d + 3d);
+        annotations.add(outlier);
+
+        RtRegressionScorer scorer = new RtRegressionScorer();
+        scorer.scoreAll(annotations);
+
+        assertEquals(12d, scorer.predict(annotation(101, LipidType.TG, 54, 3, 0d)), 0.05d);
+        assertEquals(-1, outlier.getScore());
+        for (Annotation annotation : annotations) {
+            if (annotation != outlier) assertEquals(1, annotation.getScore());
+        }
+    }
+
+    @Test
+    public void smallGroupsArePredictedByEquivalentCarbonNumber() {
+        RtRegressionScorer scorer = new RtRegressionScorer();
+        // RT grows 0.4 min per ECN unit in every double bond group
+        for (int carbons = 32; carbons <= 38; carbons += 2) {
+            scorer.add(annotation(carbons, LipidType.PC, carbons, 0, 0.4d * carbons));
+        }
+        Annotation unsaturated = annotation(1, LipidType.PC, 36, 2, 0.4d * 32);
+        scorer.add(unsaturated);
+
+        assertEquals(0.4d * 32, scorer.predict(unsaturated), 0.01d);
+        assertEquals(0d, scorer.score(unsaturated), 0.1d);
+        assertEquals(1, unsaturated.getScore());
+    }
+
+    @Test
+    public void predictionsFollowTheStreamedAnnotations() {
+        RtRegressionScorer scorer = new RtRegressionScorer();
+        Annotation probe = annotation(0, LipidType.PE, 40, 4, 10d);
+        scorer.add(annotation(1, LipidType.PE, 34, 4, 7d));
+        scorer.add(annotation(2, LipidType.PE, 36, 4, 8d));
+        assertTrue(Double.isNaN(scorer.predict(probe)));
+        assertTrue(Double.isNaN(scorer.score(probe)));
+        assertEquals(0, probe.getScore());
+
+        scorer.add(annotation(3, LipidType.PE, 38, 4, 9d));
+        assertEquals(10d, scorer.predict(probe), 1e-6);
+        scorer.add(annotation(4, LipidType.PE, 40, 4, 11d));
+        scorer.add(annotation(5, LipidType.PE, 42, 4, 12d));
+        // the fit moves with the new points
+        assertTrue(scorer.predict(probe) > 10d);
+    }
+
+    @Test
+    public void streamedPredictionsRefitOnAGeometricSchedule() {
+        RtRegression streamed = new RtRegression();
+        RtRegression batch = new RtRegression();
+        for (int i = 0; i < 10_000; i++) {
+            double carbons = 30 + i % 30;
+            double rtMin = 0.4d * carbons + (i % 7) * 0.01d;
+            streamed.add(carbons, rtMin);
+            batch.add(carbons, rtMin);
+            streamed.predict(carbons);
+        }
+        // 1.25^42 > 10^4, plus the first small sizes where every point triggers a fit
+        assertTrue("Fits: " + streamed.getFitCount(), streamed.getFitCount() < 50);
+
+        streamed.refit();
+        assertEquals(batch.predict(40), streamed.predict(40), 1e-9);
+        assertEquals(1, batch.getFitCount());
+    }
+}
@@ -0,0 +1,58 @@
+package lipid;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class RuleAdductDetectorTest {
+
+    @Test
+    public void shouldDetectTheSameAdductsAsAdductDetectionTest() {
+        Lipid lipid = new Lipid(1, "PC 34:1", "C42H82NO8P", LipidType.PC, 34, 1);
+        List<Annotation> annotations = List.of(
+                // [M+H]+ and [M+Na]+
+                new Annotation(lipid, 700.49999d, 80000.0, 6.5d, IoniationMode.POSITIVE,
+                        Set.of(new Peak(700.500, 100000.0), new Peak(722.482, 80000.0))),
+                // [M+H]+ and [M+H-H2O]+
+                new Annotation(lipid, 700.500, 90000.0, 7.5d, IoniationMode.POSITIVE,
+                        Set.of(new Peak(700.500, 90000.0), new Peak(682.4894, 70000.0))),
+                // [M+H]+ and [M+2H]2+
+                new Annotation(lipid, 700.500, 100000.0, 10d, IoniationMode.POSITIVE,
+                        Set.of(new Peak(700.500, 100000.0), new Peak(350.754, 85000.0))),
+                // single peak, nothing to compare with
+                new Annotation(lipid, 700.500, 100000.0, 11d, IoniationMode.POSITIVE,
+                        Set.of(new Peak(700.500, 100000.0))));
+
+        String[] adducts = new RuleAdductDetector(10, 2).detect(annotations);
+
+        assertEquals("[M+H]+", adducts[0]);
+        assertEquals("[M+H]+", adducts[1]);
+        assertEquals("[M+H]+", adducts[2]);
+        assertNull(adducts[3]);
+    }
+
+    @Test
+    public void shouldMatchImperativeDetectionOnARun() {
+        int groups = 2000;
+        double[] mzs = new double[groups];
+        IoniationMode[] modes = new IoniationMode[groups];
+        SignalGroup[] signals = new SignalGroup[groups];
+        AdductDetectionBenchmark.randomRun(new Random(7), mzs, modes, signals);
+
+        String[] imperative = new String[groups];
+        for (int i = 0; i < groups; i++) {
+            imperative[i] = Annotation.detectAdduct(mzs[i], modes[i], signals[i]);
+        }
+        String[] rules = new RuleAdductDetector(10, 1).detect(mzs, modes, signals);
+        String[] partitioned = new RuleAdductDetector(10, 7).detect(mzs, modes, signals);
+
+        assertArrayEquals(imperative, partitioned);
+        assertArrayEquals(imperative, rules);
+    }
+}
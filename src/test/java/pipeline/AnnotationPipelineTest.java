@@ -0,0 +1,187 @@
+package pipeline;
+
+import lipid.IoniationMode;
+import lipid.Lipid;
+import lipid.LipidType;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AnnotationPipelineTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private LipidDatabase database;
+
+    @Before
+    public void setup() {
+        database = new LipidDatabase(List.of(
+                new Lipid(1, "TG 54:3", "C57H104O6", LipidType.TG, 54, 3),  // MZ of [M+H]+ = 885.79057
+                new Lipid(2, "TG 52:3", "C55H100O6", LipidType.TG, 52, 3),  // MZ of [M+H]+ = 857.75927
+                new Lipid(3, "TG 56:3", "C59H108O6", LipidType.TG, 56, 3))); // MZ of [M+H]+ = 913.82187
+    }
+
+    @Test
+    public void shouldFindCandidatesByMass() {
+        assertEquals(1, database.findByMass(884.78329, 10).size());
+        assertEquals("TG 54:3", database.findByMass(884.78329, 10).get(0).getName());
+        assertEquals(0, database.findByMass(884.80, 10).size());
+        Lipid lipid = database.findByMass(884.78329, 10).get(0);
+        assertEquals(884.78329, database.getMonoisotopicMass(lipid), 1e-4);
+    }
+
+    @Test
+    public void shouldAnnotateAndScoreEverySample() throws Exception {
+        List<Path> samples = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            // [M+H]+ and [M+Na]+ of each TG, eluting by number of carbons
+            samples.add(writeSample("sample" + i,
+                    "mz,rtMin,intensity",
+                    "857.75927,9.0,100000",
+                    "879.74121,9.0,50000",
+                    "885.79057,10.0,100000",
+                    "907.77251,10.0,50000",
+                    "913.82187,11.0,100000",
+                    "935.80381,11.0,50000"));
+        }
+        Path outputDir = folder.newFolder("out").toPath();
+
+        PipelineConfig config = new PipelineConfig();
+        config.setIonizationMode(IoniationMode.POSITIVE);
+        config.setQueueCapacity(1);
+        config.setScoringParallelism(2);
+        AnnotationPipeline pipeline = new AnnotationPipeline(config, database);
+        List<String> completed = pipeline.run(samples, outputDir);
+
+        assertEquals(5, completed.size());
+        assertTrue(pipeline.getFailedSamples().isEmpty());
+        List<String> lines = Files.readAllLines(outputDir.resolve("sample0.tsv"));
+        assertEquals(ResultWriter.HEADER, lines.get(0));
+        assertEquals(7, lines.size());
+        for (String line : lines.subList(1, lines.size())) {
+            String[] fields = line.split("\t");
+            assertEquals("Elution order is respected: " + line, "1", fields[8]);
+        }
+    }
+
+    @Test
+    public void shouldWriteTheMatchedAdductWhenNoneWasDetected() throws Exception {
+        // a single feature per group, so no adduct is detected and every adduct is tried
+        Path sample = writeSample("sample",
+                "885.79057,10.0,100000",
+                "879.74121,12.0,50000");
+        Path outputDir = folder.newFolder("out").toPath();
+        new AnnotationPipeline(new PipelineConfig(), database).run(List.of(sample), outputDir);
+
+        List<String> lines = Files.readAllLines(outputDir.resolve("sample.tsv"));
+        assertEquals(3, lines.size());
+        for (String line : lines.subList(1, lines.size())) {
+            String[] fields = line.split("\t");
+            String expected = fields[1].equals("TG 54:3") ? "[M+H]+" : "[M+Na]+";
+            assertEquals(line, expected, fields[3]);
+        }
+    }
+
+    @Test
+    public void shouldWriteTheSameResultsWithRuleAdductDetection() throws Exception {
+        Path sample = writeSample("sample",
+                "857.75927,9.0,100000",
+                "879.74121,9.0,50000",
+                "885.79057,10.0,100000",
+                "907.77251,10.0,50000");
+        PipelineConfig config = new PipelineConfig();
+        Path imperativeDir = folder.newFolder("imperative").toPath();
+        new AnnotationPipeline(config, database).run(List.of(sample), imperativeDir);
+
+        config.setAdductDetection(PipelineConfig.AdductDetection.RULES);
+        config.setAdductDetectionPartitions(3);
+        Path rulesDir = folder.newFolder("rules").toPath();
+        new AnnotationPipeline(config, database).run(List.of(sample), rulesDir);
+
+        List<String> lines = Files.readAllLines(rulesDir.resolve("sample.tsv"));
+        assertEquals(Files.readAllLines(imperativeDir.resolve("sample.tsv")), lines);
+        assertEquals(5, lines.size());
+    }
+
+    @Test
+    public void shouldKeepProcessingWhenOneSampleFails() throws Exception {
+        Path good = writeSample("good", "885.79057,10.0,100000", "907.77251,10.0,50000");
+        Path bad = writeSample("bad", "885.79057,ten,100000");
+        Path outputDir = folder.newFolder("out").toPath();
+
+        AnnotationPipeline pipeline = new AnnotationPipeline(new PipelineConfig(), database);
+        List<String> completed = pipeline.run(List.of(bad, good), outputDir);
+
+        assertEquals(List.of("good"), completed);
+        assertEquals(List.of("bad"), pipeline.getFailedSamples());
+    }
+
+    @Test
+    public void shouldSkipTheHeaderAfterCommentsAndBlankLines() throws Exception {
+        Path features = writeSample("commented", "# exported features", "", "mz,rtMin,intensity", "885.79057,10.0,100000");
+        assertEquals(1, FeatureReader.read(features).size());
+        assertEquals(885.79057, FeatureReader.read(features).get(0).getMz(), 0d);
+
+        Path lipids = folder.getRoot().toPath().resolve("lipids.csv");
+        Files.write(lipids, List.of("# lipids", "", "compoundId,name,formula,lipidType,carbonCount,doubleBondsCount",
+                "1,TG 54:3,C57H104O6,TG,54,3"));
+        assertEquals(1, LipidDatabase.read(lipids).size());
+    }
+
+    @Test
+    public void shouldReportEmptyFieldsWithTheLineNumber() throws Exception {
+        Path features = writeSample("empty", "mz,rtMin,intensity", "885.79057,10.0,100000", ",10.0,100000");
+        try {
+            FeatureReader.read(features);
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().endsWith("empty.csv:3: empty mz field"));
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void shouldEndTheStageWhenAStepThrowsAnError() throws Exception {
+        Stage stage = new Stage("failing", 2, sample -> {
+            if (sample.getName().equals("bad")) throw new StackOverflowError();
+        });
+        BlockingQueue<Sample> input = new ArrayBlockingQueue<>(4);
+        BlockingQueue<Sample> output = new ArrayBlockingQueue<>(4);
+        List<String> failed = Collections.synchronizedList(new ArrayList<>());
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            stage.start(input, output, executor, failed);
+            input.put(new Sample("bad", null, null));
+            input.put(new Sample("good", null, null));
+            input.put(AnnotationPipeline.END);
+
+            assertEquals("good", output.take().getName());
+            assertSame(AnnotationPipeline.END, output.take());
+            assertEquals(List.of("bad"), failed);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Path writeSample(String name, String... lines) throws IOException {
+        Path file = folder.getRoot().toPath().resolve(name + ".csv");
+        return Files.write(file, List.of(lines));
+    }
+}
@@ -0,0 +1,125 @@
+package pipeline;
+
+import adduct.Adduct;
+import adduct.AdductList;
+import lipid.Annotation;
+import lipid.IoniationMode;
+import lipid.IsotopePatternScorer;
+import lipid.Lipid;
+import lipid.LipidType;
+import lipid.Peak;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+public class CandidatePrunerTest {
+
+    @Test
+    public void shouldKeepTopKCandidatesPerFeature() {
+        Lipid exact = new Lipid(1, "TG 54:3", "C57H104O6", LipidType.TG, 54, 3);   // MZ of [M+H]+ = 885.79057
+        Lipid close = new Lipid(2, "Other 1", "C56H100O7", LipidType.TG, 53, 3);  // 36.4 mDa lighter
+        Lipid far = new Lipid(3, "Other 2", "C58H108O5", LipidType.TG, 55, 2);    // 36.4 mDa heavier, same ppm as close
+        Lipid farthest = new Lipid(4, "Other 3", "C55H96O8", LipidType.TG, 52, 4); // 72.8 mDa lighter
+        Lipid alone = new Lipid(5, "TG 52:3", "C55H100O6", LipidType.TG, 52, 3);  // MZ of [M+H]+ = 857.75927
+
+        Annotation a1 = new Annotation(farthest, 885.79057, 1E6, 10d, IoniationMode.POSITIVE);
+        Annotation a2 = new Annotation(exact, 885.79057, 1E6, 10d, IoniationMode.POSITIVE);
+        Annotation a3 = new Annotation(alone, 857.75927, 1E6, 9d, IoniationMode.POSITIVE);
+        Annotation a4 = new Annotation(close, 885.79057, 1E6, 10d, IoniationMode.POSITIVE);
+        Annotation a5 = new Annotation(far, 885.79057, 1E6, 10d, IoniationMode.POSITIVE);
+
+        CandidatePruner pruner = new CandidatePruner(2, new IsotopePatternScorer(),
+                new LipidDatabase(List.of(exact, close, far, farthest, alone)));
+        List<Annotation> pruned = pruner.prune(List.of(a1, a2, a3, a4, a5), AdductList.MAPMZPOSITIVEADDUCTS);
+
+        assertEquals(3, pruned.size());
+        assertEquals(a2, pruned.get(0));
+        assertEquals(a3, pruned.get(1));
+        // close and far are equally distant from the feature, so only one of them survives
+        assertEquals(2, pruned.stream().filter(a -> a.getMz() == 885.79057).count());
+    }
+
+    @Test
+    public void shouldReuseTheIsotopeFitOfTheIsotopeStage() {
+        AtomicInteger fits = new AtomicInteger();
+        IsotopePatternScorer scorer = new IsotopePatternScorer() {
+            @Override
+            public double fit(Annotation annotation) {
+                fits.incrementAndGet();
+                return super.fit(annotation);
+            }
+        };
+        Lipid lipid1 = new Lipid(1, "TG 54:3", "C57H104O6", LipidType.TG, 54, 3);
+        Lipid lipid2 = new Lipid(2, "TG 52:3", "C55H100O6", LipidType.TG, 52, 3);
+        Set<Peak> peaks = Set.of(new Peak(885.79057, 1E6), new Peak(886.79392, 6.2E5));
+        List<Annotation> annotations = List.of(
+                new Annotation(lipid1, 885.79057, 1E6, 10d, IoniationMode.POSITIVE, peaks),
+                new Annotation(lipid2, 885.79057, 1E6, 10d, IoniationMode.POSITIVE, peaks));
+        for (Annotation annotation : annotations) {
+            scorer.score(annotation);
+        }
+
+        new CandidatePruner(1, scorer, new LipidDatabase(List.of(lipid1, lipid2))).prune(annotations, AdductList.MAPMZPOSITIVEADDUCTS);
+
+        assertEquals(2, fits.get());
+    }
+
+    @Test
+    public void shouldPreferTheMoreCommonAdductOnEqualPpm() {
+        Lipid sodiated = new Lipid(1, "TG 54:3", "C57H104O6", LipidType.TG, 54, 3);     // MZ of [M+Na]+ = 907.77251
+        Lipid protonated = new Lipid(2, "TG 56:6", "C59H102O6", LipidType.TG, 56, 6);   // MZ of [M+H]+ = 907.77497
+        LipidDatabase database = new LipidDatabase(List.of(sodiated, protonated));
+        double sodiatedMz = Adduct.getMZFromMonoisotopicMass(database.getMonoisotopicMass(sodiated),
+                Map.entry("[M+Na]+", AdductList.MAPMZPOSITIVEADDUCTS.get("[M+Na]+")));
+        double protonatedMz = Adduct.getMZFromMonoisotopicMass(database.getMonoisotopicMass(protonated),
+                Map.entry("[M+H]+", AdductList.MAPMZPOSITIVEADDUCTS.get("[M+H]+")));
+        // halfway between both, so both candidates have the same ppm error
+        double mz = (sodiatedMz + protonatedMz) / 2;
+        Annotation asSodium = new Annotation(sodiated, mz, 1E6, 10d, IoniationMode.POSITIVE);
+        Annotation asProton = new Annotation(protonated, mz, 1E6, 10d, IoniationMode.POSITIVE);
+        asSodium.setAdduct("[M+Na]+");
+        asProton.setAdduct("[M+H]+");
+        // the isotope fit would keep the sodium adduct if the adduct rank did not decide first
+        asSodium.setIsotopeFit(1.0d);
+        asProton.setIsotopeFit(0.2d);
+
+        List<Annotation> pruned = new CandidatePruner(1, new IsotopePatternScorer(), database)
+                .prune(List.of(asSodium, asProton), AdductList.MAPMZPOSITIVEADDUCTS);
+
+        assertEquals(List.of(asProton), pruned);
+    }
+
+    @Test
+    public void shouldRankByTheMatchedAdduct() {
+        Lipid exact = new Lipid(1, "TG 54:3", "C57H104O6", LipidType.TG, 54, 3);   // MZ of [M+H]+ = 885.79057
+        Lipid close = new Lipid(2, "Other 1", "C56H100O7", LipidType.TG, 53, 3);  // 36.4 mDa lighter
+        Annotation asSodium = new Annotation(exact, 885.79057, 1E6, 10d, IoniationMode.POSITIVE);
+        Annotation asProton = new Annotation(close, 885.79057, 1E6, 10d, IoniationMode.POSITIVE);
+        CandidatePruner pruner = new CandidatePruner(1, new IsotopePatternScorer(), new LipidDatabase(List.of(exact, close)));
+
+        // without a matched adduct TG 54:3 is ranked by its best adduct, [M+H]+ at 0 ppm
+        assertEquals(List.of(asSodium), pruner.prune(List.of(asSodium, asProton), AdductList.MAPMZPOSITIVEADDUCTS));
+
+        // matched as [M+Na]+ it is about 25000 ppm away, so the other candidate is kept
+        asSodium.setAdduct("[M+Na]+");
+        asProton.setAdduct("[M+H]+");
+        assertEquals(List.of(asProton), pruner.prune(List.of(asSodium, asProton), AdductList.MAPMZPOSITIVEADDUCTS));
+    }
+
+    @Test
+    public void shouldKeepEveryCandidateWhenBelowK() {
+        Lipid lipid1 = new Lipid(1, "TG 54:3", "C57H104O6", LipidType.TG, 54, 3);
+        Lipid lipid2 = new Lipid(2, "TG 52:3", "C55H100O6", LipidType.TG, 52, 3);
+        List<Annotation> annotations = List.of(
+                new Annotation(lipid1, 885.79057, 1E6, 10d, IoniationMode.POSITIVE),
+                new Annotation(lipid2, 885.79057, 1E6, 10d, IoniationMode.POSITIVE));
+
+        assertEquals(annotations, new CandidatePruner(3, new IsotopePatternScorer(), new LipidDatabase(List.of(lipid1, lipid2)))
+                .prune(annotations, AdductList.MAPMZPOSITIVEADDUCTS));
+    }
+}
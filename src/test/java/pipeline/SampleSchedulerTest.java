@@ -0,0 +1,171 @@
+package pipeline;
+
+import lipid.Lipid;
+import lipid.LipidType;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SampleSchedulerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private LipidDatabase database;
+
+    @Before
+    public void setup() {
+        database = new LipidDatabase(List.of(
+                new Lipid(1, "TG 54:3", "C57H104O6", LipidType.TG, 54, 3),  // MZ of [M+H]+ = 885.79057
+                new Lipid(2, "TG 52:3", "C55H100O6", LipidType.TG, 52, 3))); // MZ of [M+H]+ = 857.75927
+    }
+
+    @Test
+    public void shouldReportEverySampleAndIsolateFailures() throws Exception {
+        List<Path> samples = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            samples.add(writeSample("sample" + i, "857.75927,9.0,100000", "885.79057,10.0,100000"));
+        }
+        samples.add(5, writeSample("broken", "885.79057"));
+        samples.add(folder.getRoot().toPath().resolve("missing.csv"));
+        Path outputDir = folder.newFolder("out").toPath();
+
+        PipelineConfig config = new PipelineConfig();
+        config.setMaxConcurrentSessions(2);
+        config.setMaxSamplesInFlight(4);
+        AtomicInteger started = new AtomicInteger();
+        AtomicInteger lastFinished = new AtomicInteger();
+        List<SampleResult> results = new SampleScheduler(config, database).run(samples, outputDir, new SampleListener() {
+            @Override
+            public void sampleStarted(String sampleName) {
+                started.incrementAndGet();
+            }
+
+            @Override
+            public void sampleFinished(SampleResult result, int finished, int total) {
+                lastFinished.accumulateAndGet(finished, Math::max);
+                assertEquals(22, total);
+            }
+        });
+
+        assertEquals(22, results.size());
+        assertEquals(22, started.get());
+        assertEquals(22, lastFinished.get());
+        assertEquals("broken", results.get(5).getSampleName());
+        assertFalse(results.get(5).isSucceeded());
+        assertNotNull(results.get(5).getError());
+        assertFalse(results.get(21).isSucceeded());
+        for (SampleResult result : results) {
+            if (result.getSampleName().startsWith("sample")) {
+                assertTrue(result.toString(), result.isSucceeded());
+                assertEquals(2, result.getAnnotationCount());
+                assertTrue(Files.exists(outputDir.resolve(result.getSampleName() + ".tsv")));
+            }
+        }
+    }
+
+    @Test
+    public void shouldReportAnErrorAsAFailedSample() throws Exception {
+        List<Path> samples = List.of(writeSample("first", "885.79057,10.0,100000"),
+                writeSample("overflow", "885.79057,10.0,100000"),
+                writeSample("last", "885.79057,10.0,100000"));
+        PipelineConfig config = new PipelineConfig();
+        SampleProcessor processor = new SampleProcessor(config, database) {
+            @Override
+            public void groupPeaks(Sample sample) {
+                if (sample.getName().equals("overflow")) throw new StackOverflowError();
+                super.groupPeaks(sample);
+            }
+        };
+        AtomicInteger finished = new AtomicInteger();
+        List<SampleResult> results = new SampleScheduler(config, processor).run(samples, folder.newFolder("out").toPath(),
+                new SampleListener() {
+                    @Override
+                    public void sampleFinished(SampleResult result, int count, int total) {
+                        finished.incrementAndGet();
+                    }
+                });
+
+        assertEquals(3, finished.get());
+        assertTrue(results.get(0).isSucceeded());
+        assertFalse(results.get(1).isSucceeded());
+        assertTrue(results.get(1).getError() instanceof StackOverflowError);
+        assertTrue(results.get(2).isSucceeded());
+    }
+
+    @Test
+    public void shouldPropagateListenerFailures() throws Exception {
+        List<Path> samples = List.of(writeSample("first", "885.79057,10.0,100000"),
+                writeSample("second", "885.79057,10.0,100000"));
+        AtomicInteger finished = new AtomicInteger();
+        try {
+            new SampleScheduler(new PipelineConfig(), database).run(samples, folder.newFolder("out").toPath(), new SampleListener() {
+                @Override
+                public void sampleFinished(SampleResult result, int count, int total) {
+                    finished.incrementAndGet();
+                    if (result.getSampleName().equals("second")) throw new IllegalArgumentException("listener bug");
+                }
+            });
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("Sample listener failed for sample second", e.getMessage());
+            assertEquals("listener bug", e.getCause().getMessage());
+        }
+        assertEquals(2, finished.get());
+    }
+
+    @Test
+    public void shouldAlignLikeThePipeline() throws Exception {
+        List<Path> samples = List.of(writeDriftedSample("reference", 0d, true), writeDriftedSample("drifted", 0.3d, false));
+        PipelineConfig config = new PipelineConfig();
+        config.setRtAlignment(true);
+
+        Path pipelineDir = folder.newFolder("pipeline").toPath();
+        new AnnotationPipeline(config, database).run(samples, pipelineDir);
+        Path schedulerDir = folder.newFolder("scheduler").toPath();
+        new SampleScheduler(config, database).run(samples, schedulerDir);
+
+        for (String name : List.of("reference", "drifted")) {
+            List<String> lines = Files.readAllLines(schedulerDir.resolve(name + ".tsv"));
+            assertEquals(Files.readAllLines(pipelineDir.resolve(name + ".tsv")), lines);
+            assertEquals(3, lines.size());
+            for (String line : lines.subList(1, lines.size())) {
+                assertTrue(line, line.contains("\t10.000\t") || line.contains("\t9.000\t"));
+            }
+        }
+    }
+
+    /**
+     * Two TGs and landmark features every 0.2 minutes that match no lipid, all eluting {@code drift} minutes late.
+     */
+    private Path writeDriftedSample(String name, double drift, boolean extraLandmark) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format(Locale.ROOT, "857.75927,%.3f,100000", 9.0 + drift));
+        lines.add(String.format(Locale.ROOT, "885.79057,%.3f,100000", 10.0 + drift));
+        for (int i = 0; i < 90; i++) {
+            lines.add(String.format(Locale.ROOT, "%.5f,%.3f,50000", 300.1234 + 4.1 * i, 1.1 + 0.2 * i + drift));
+        }
+        if (extraLandmark) lines.add("250.0,5.0,50000");
+        return writeSample(name, lines.toArray(new String[0]));
+    }
+
+    private Path writeSample(String name, String... lines) throws IOException {
+        Path file = folder.getRoot().toPath().resolve(name + ".csv");
+        return Files.write(file, List.of(lines));
+    }
+}